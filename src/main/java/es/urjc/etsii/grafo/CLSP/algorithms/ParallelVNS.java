@@ -0,0 +1,244 @@
+package es.urjc.etsii.grafo.CLSP.algorithms;
+
+import es.urjc.etsii.grafo.CLSP.model.CLSPInstance;
+import es.urjc.etsii.grafo.CLSP.model.CLSPSolution;
+import es.urjc.etsii.grafo.CLSP.model.VisitedSolutions;
+import es.urjc.etsii.grafo.CLSP.model.neighborhoods.EfficientExchangeNeighborhood;
+import es.urjc.etsii.grafo.algorithms.Algorithm;
+import es.urjc.etsii.grafo.algorithms.VNS;
+import es.urjc.etsii.grafo.create.Constructive;
+import es.urjc.etsii.grafo.improve.Improver;
+import es.urjc.etsii.grafo.util.DoubleComparator;
+import es.urjc.etsii.grafo.util.TimeControl;
+import es.urjc.etsii.grafo.util.random.RandomManager;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Island model VNS. Several VNS run as independent islands in parallel, each one with its own solution and random
+ * stream, and the best solution found by any island is shared through a lock-free holder. The islands run in epochs of
+ * a fixed number of VNS iterations. After each epoch, every island receives the solution of the previous island
+ * (ring topology) if it is better than its own, and restarts the neighborhood from k = 1.
+ * <p>
+ * An island stops when the maximum k is reached, as the sequential VNS does, and is resumed if it receives a better
+ * solution. The algorithm ends when every island has stopped, or when the time is up. TimeControl is kept by thread, so
+ * the deadline is calculated in the calling thread and given to the islands, which check it in every iteration and set
+ * it in the TimeControl of their worker thread, so the local searches of the improver also stop in time. Initial
+ * solutions are built in the calling thread and the shake of each island uses its own random stream, so the result only
+ * depends on the seed of the solver and not on the number of threads.
+ * <p>
+ * When the improver skips visited solutions (see DuplicateSkippingImprover), each island records them in its own set,
+ * and the sets are merged after each epoch, so the skipped solutions do not depend on the order of the threads either.
+ * <p>
+ * Each iteration shakes and improves the solution of the island in place, recording the changes in the undo journal of
+ * the solution, and rolls them back if the result is not better. Only improving solutions are cloned, to publish them.
+ * <p>
+ * It is intended to give a single instance the whole machine, so the parallel executor of the solver should be
+ * disabled when using it.
+ */
+public class ParallelVNS extends Algorithm<CLSPSolution, CLSPInstance> {
+
+    // Deadline of the runs without time limit
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final int numberOfIslands;
+    private final int migrationInterval;
+    private final VNS.KMapper<CLSPSolution, CLSPInstance> maxK;
+    private final Constructive<CLSPSolution, CLSPInstance> constructive;
+    private final EfficientExchangeNeighborhood shakeNeighborhood;
+    private final Improver<CLSPSolution, CLSPInstance> improver;
+
+    /**
+     * Creates a new island model VNS
+     *
+     * @param name              Algorithm name
+     * @param numberOfIslands   Number of VNS run in parallel
+     * @param migrationInterval Number of VNS iterations of each island between migrations
+     * @param maxK              Maximum k of the VNS, as in the sequential VNS
+     * @param constructive      Constructive of the initial solution of each island
+     * @param shakeNeighborhood Neighborhood of the random moves of the shake, k moves are applied
+     * @param improver          Improver of the VNS, shared by all the islands
+     */
+    public ParallelVNS(String name, int numberOfIslands, int migrationInterval, VNS.KMapper<CLSPSolution, CLSPInstance> maxK, Constructive<CLSPSolution, CLSPInstance> constructive, EfficientExchangeNeighborhood shakeNeighborhood, Improver<CLSPSolution, CLSPInstance> improver) {
+        super(name);
+        if (numberOfIslands < 1) {
+            throw new IllegalArgumentException("The number of islands must be at least 1: " + numberOfIslands);
+        }
+        if (migrationInterval < 1) {
+            throw new IllegalArgumentException("The migration interval must be at least 1: " + migrationInterval);
+        }
+        this.numberOfIslands = numberOfIslands;
+        this.migrationInterval = migrationInterval;
+        this.maxK = maxK;
+        this.constructive = constructive;
+        this.shakeNeighborhood = shakeNeighborhood;
+        this.improver = improver;
+    }
+
+    @Override
+    public CLSPSolution algorithm(CLSPInstance instance) {
+        AtomicReference<Incumbent> best = new AtomicReference<>();
+        long deadline = TimeControl.isEnabled() ? System.nanoTime() + TimeControl.remaining() : NO_DEADLINE;
+
+        // All the islands belong to the same run, each one with its own set of visited solutions over the shared one
+        VisitedSolutions visited = new VisitedSolutions();
+        Island[] islands = new Island[numberOfIslands];
+        for (int i = 0; i < numberOfIslands; i++) {
+            CLSPSolution solution = constructive.construct(new CLSPSolution(instance));
+            solution.setVisitedSolutions(new VisitedSolutions(visited));
+            islands[i] = new Island(i, solution, new SplittableRandom(RandomManager.getRandom().nextLong()), best);
+            islands[i].publish(solution.cloneSolution());
+        }
+
+        while (!isTimeUp(deadline)) {
+            Island[] active = Arrays.stream(islands).filter(island -> !island.stopped).toArray(Island[]::new);
+            if (active.length == 0) {
+                break;
+            }
+            Arrays.stream(active).parallel().forEach(island -> island.runEpoch(deadline));
+            for (Island island : islands) {
+                island.visited.mergeIntoShared();
+            }
+            migrate(islands);
+        }
+
+        return best.get().solution();
+    }
+
+    private static boolean isTimeUp(long deadline) {
+        return deadline != NO_DEADLINE && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * Each island receives the solution of the previous one if it is better than its own. The solutions are taken
+     * before replacing any of them, so the result does not depend on the order.
+     */
+    private void migrate(Island[] islands) {
+        CLSPSolution[] migrants = new CLSPSolution[islands.length];
+        for (int i = 0; i < islands.length; i++) {
+            migrants[i] = islands[(i + islands.length - 1) % islands.length].current;
+        }
+        for (int i = 0; i < islands.length; i++) {
+            if (islands[i].current != null && migrants[i] != null && DoubleComparator.isLess(migrants[i].getScore(), islands[i].current.getScore())) {
+                islands[i].current = migrants[i].cloneSolution();
+                islands[i].current.setVisitedSolutions(islands[i].visited);
+                islands[i].k = 1;
+                islands[i].stopped = false;
+            }
+        }
+    }
+
+    /**
+     * Solution of the holder of the best solution, and the island that found it. For the same score, the solution of
+     * the island with the lowest index is kept, so the result does not depend on the order of the updates.
+     */
+    private record Incumbent(CLSPSolution solution, int island) {
+        static Incumbent best(Incumbent a, Incumbent b) {
+            if (a == null) {
+                return b;
+            }
+            if (DoubleComparator.isLess(b.solution.getScore(), a.solution.getScore())) {
+                return b;
+            }
+            if (DoubleComparator.equals(b.solution.getScore(), a.solution.getScore()) && b.island < a.island) {
+                return b;
+            }
+            return a;
+        }
+    }
+
+    /**
+     * VNS run by a single thread. Its fields are only modified by the thread running the epoch, or by the calling
+     * thread between epochs.
+     */
+    private final class Island {
+        private final int index;
+        private final SplittableRandom random;
+        private final AtomicReference<Incumbent> best;
+        // Solutions visited by the island in the current epoch
+        private final VisitedSolutions visited;
+        // Constructed solution, improved in the first epoch
+        private CLSPSolution constructed;
+        private CLSPSolution current;
+        private int k;
+        private boolean stopped;
+
+        Island(int index, CLSPSolution constructed, SplittableRandom random, AtomicReference<Incumbent> best) {
+            this.index = index;
+            this.constructed = constructed;
+            this.random = random;
+            this.best = best;
+            this.visited = constructed.getVisitedSolutions();
+            this.k = 1;
+            this.stopped = false;
+        }
+
+        /**
+         * Runs the VNS iterations of an epoch, until the deadline at most
+         *
+         * @param deadline Value of System.nanoTime() when the time is up, or NO_DEADLINE
+         */
+        void runEpoch(long deadline) {
+            // The calling thread can also run an island, and it already has the time limit of the solver
+            boolean setTimeControl = deadline != NO_DEADLINE && !TimeControl.isEnabled();
+            if (setTimeControl) {
+                TimeControl.setMaxExecutionTime(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                TimeControl.start();
+            }
+            try {
+                runIterations(deadline);
+            } finally {
+                if (setTimeControl) {
+                    TimeControl.remove();
+                }
+            }
+        }
+
+        private void runIterations(long deadline) {
+            if (isTimeUp(deadline)) {
+                return;
+            }
+            if (constructed != null) {
+                current = improver.improve(constructed);
+                constructed = null;
+                publish(current.cloneSolution());
+            }
+            for (int iteration = 0; iteration < migrationInterval && !isTimeUp(deadline); iteration++) {
+                int mappedK = maxK.mapK(current, k);
+                if (mappedK == VNS.KMapper.STOPNOW) {
+                    stopped = true;
+                    return;
+                }
+                double previousScore = current.getScore();
+                CLSPSolution shaken = current;
+                shaken.beginJournal();
+                for (int i = 0; i < mappedK; i++) {
+                    shakeNeighborhood.getRandomMove(shaken, random).ifPresent(move -> move.execute(shaken));
+                }
+                CLSPSolution candidate = improver.improve(shaken);
+                boolean improved = DoubleComparator.isLess(candidate.getScore(), previousScore);
+                if (candidate == shaken && improved) {
+                    shaken.commitJournal();
+                } else {
+                    // Not better, or the improver returned a different solution
+                    shaken.rollbackJournal();
+                }
+                if (improved) {
+                    current = candidate;
+                    k = 1;
+                    publish(current.cloneSolution());
+                } else {
+                    k++;
+                }
+            }
+        }
+
+        private void publish(CLSPSolution solution) {
+            var incumbent = new Incumbent(solution, index);
+            best.accumulateAndGet(incumbent, Incumbent::best);
+        }
+    }
+}
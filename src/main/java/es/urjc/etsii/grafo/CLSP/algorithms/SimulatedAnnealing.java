@@ -0,0 +1,158 @@
+package es.urjc.etsii.grafo.CLSP.algorithms;
+
+import es.urjc.etsii.grafo.CLSP.model.CLSPInstance;
+import es.urjc.etsii.grafo.CLSP.model.CLSPSolution;
+import es.urjc.etsii.grafo.CLSP.model.moves.CLSPBaseMove;
+import es.urjc.etsii.grafo.CLSP.model.neighborhoods.EfficientExchangeNeighborhood;
+import es.urjc.etsii.grafo.CLSP.model.neighborhoods.EfficientInsertNeighborhood;
+import es.urjc.etsii.grafo.algorithms.Algorithm;
+import es.urjc.etsii.grafo.create.Constructive;
+import es.urjc.etsii.grafo.util.DoubleComparator;
+import es.urjc.etsii.grafo.util.TimeControl;
+import es.urjc.etsii.grafo.util.random.RandomManager;
+
+import java.util.Optional;
+import java.util.random.RandomGenerator;
+
+/**
+ * Simulated annealing over the insert and exchange neighborhoods. Each step draws a single random insert or exchange
+ * move, which is evaluated with the incremental evaluation of the efficient neighborhoods (only the changed machines
+ * are simulated, from the first changed work slot), instead of exploring the whole neighborhood. Improving moves are
+ * always accepted, and worsening moves with probability exp(-value / temperature). Accepted moves are applied to the
+ * current solution in place, and the best solution is only cloned when it improves.
+ * <p>
+ * Temperatures are given as a fraction of the score of the initial solution, so the same configuration can be used for
+ * instances of different sizes. An initial solution with score 0 is optimal and returned as it is. The temperature is
+ * lowered with the cooling schedule after a fixed number of moves. When reheating is enabled, the temperature goes back
+ * to the initial one after some seconds without improving the best solution, and the search only stops when the time is
+ * up. Otherwise, it also stops when the final temperature is reached.
+ */
+public class SimulatedAnnealing extends Algorithm<CLSPSolution, CLSPInstance> {
+
+    /**
+     * Cooling schedules
+     */
+    public enum CoolingSchedule {
+        // t = t * rate
+        GEOMETRIC,
+        // t = t / (1 + rate * t), with the rate relative to the initial temperature
+        LUNDY_MEES;
+
+        public static CoolingSchedule fromString(String name) {
+            return switch (name) {
+                case "geometric" -> GEOMETRIC;
+                case "lundymees" -> LUNDY_MEES;
+                default -> throw new IllegalArgumentException("Unknown cooling schedule: " + name);
+            };
+        }
+    }
+
+    private final Constructive<CLSPSolution, CLSPInstance> constructive;
+    private final EfficientInsertNeighborhood insertNeighborhood;
+    private final EfficientExchangeNeighborhood exchangeNeighborhood;
+    private final double insertProbability;
+    private final double initialTemperature;
+    private final double finalTemperature;
+    private final CoolingSchedule cooling;
+    private final double coolingRate;
+    private final int movesPerTemperature;
+    private final long reheatNanos;
+
+    /**
+     * Creates a new simulated annealing
+     *
+     * @param name                Algorithm name
+     * @param constructive        Constructive of the initial solution
+     * @param insertProbability   Probability of drawing an insert move instead of an exchange move
+     * @param initialTemperature  Initial temperature, as a fraction of the score of the initial solution
+     * @param finalTemperature    Final temperature, as a fraction of the score of the initial solution
+     * @param cooling             Cooling schedule
+     * @param coolingRate         Rate of the cooling schedule, in (0, 1) for the geometric schedule
+     * @param movesPerTemperature Number of moves drawn before lowering the temperature
+     * @param reheatSeconds       Seconds without improving the best solution before reheating, 0 to disable it
+     */
+    public SimulatedAnnealing(String name, Constructive<CLSPSolution, CLSPInstance> constructive, double insertProbability, double initialTemperature, double finalTemperature, CoolingSchedule cooling, double coolingRate, int movesPerTemperature, double reheatSeconds) {
+        super(name);
+        if (insertProbability < 0 || insertProbability > 1) {
+            throw new IllegalArgumentException("The insert probability must be in [0, 1]: " + insertProbability);
+        }
+        if (initialTemperature <= 0 || finalTemperature <= 0 || finalTemperature > initialTemperature) {
+            throw new IllegalArgumentException("Temperatures must be positive and the final one not higher than the initial one: " + initialTemperature + ", " + finalTemperature);
+        }
+        if (coolingRate <= 0 || (cooling == CoolingSchedule.GEOMETRIC && coolingRate >= 1)) {
+            throw new IllegalArgumentException("Invalid cooling rate for the " + cooling + " schedule: " + coolingRate);
+        }
+        if (movesPerTemperature < 1) {
+            throw new IllegalArgumentException("The number of moves per temperature must be at least 1: " + movesPerTemperature);
+        }
+        if (reheatSeconds < 0) {
+            throw new IllegalArgumentException("The reheating time cannot be negative: " + reheatSeconds);
+        }
+        this.constructive = constructive;
+        this.insertNeighborhood = new EfficientInsertNeighborhood();
+        this.exchangeNeighborhood = new EfficientExchangeNeighborhood();
+        this.insertProbability = insertProbability;
+        this.initialTemperature = initialTemperature;
+        this.finalTemperature = finalTemperature;
+        this.cooling = cooling;
+        this.coolingRate = coolingRate;
+        this.movesPerTemperature = movesPerTemperature;
+        this.reheatNanos = (long) (reheatSeconds * 1_000_000_000L);
+    }
+
+    @Override
+    public CLSPSolution algorithm(CLSPInstance instance) {
+        RandomGenerator random = RandomManager.getRandom();
+        CLSPSolution current = constructive.construct(new CLSPSolution(instance));
+        CLSPSolution best = current.cloneSolution();
+        // Scores are never negative, so an initial solution with score 0 is optimal. Its temperatures would be 0 too
+        if (current.getScore() <= 0) {
+            return best;
+        }
+
+        double t0 = initialTemperature * current.getScore();
+        double tf = finalTemperature * current.getScore();
+        double temperature = t0;
+        long lastImprovement = System.nanoTime();
+
+        while (!TimeControl.isTimeUp()) {
+            for (int i = 0; i < movesPerTemperature; i++) {
+                Optional<? extends CLSPBaseMove> move = (random.nextDouble() < insertProbability)
+                        ? insertNeighborhood.getRandomMove(current, random)
+                        : exchangeNeighborhood.getRandomMove(current, random);
+                if (move.isEmpty()) {
+                    return best;
+                }
+                double value = move.get().getMoveValue();
+                if (value <= 0 || random.nextDouble() < Math.exp(-value / temperature)) {
+                    move.get().execute(current);
+                    if (DoubleComparator.isLess(current.getScore(), best.getScore())) {
+                        best = current.cloneSolution();
+                        lastImprovement = System.nanoTime();
+                    }
+                }
+            }
+
+            temperature = cool(temperature, t0);
+            if (reheatNanos > 0) {
+                // Frozen searches go on at the final temperature until they are reheated
+                temperature = Math.max(temperature, tf);
+                if (System.nanoTime() - lastImprovement > reheatNanos) {
+                    temperature = t0;
+                    lastImprovement = System.nanoTime();
+                }
+            } else if (temperature < tf) {
+                break;
+            }
+        }
+
+        return best;
+    }
+
+    private double cool(double temperature, double t0) {
+        return switch (cooling) {
+            case GEOMETRIC -> temperature * coolingRate;
+            case LUNDY_MEES -> temperature / (1 + coolingRate / t0 * temperature);
+        };
+    }
+}
@@ -0,0 +1,125 @@
+package es.urjc.etsii.grafo.CLSP.algorithms;
+
+import es.urjc.etsii.grafo.CLSP.model.CLSPInstance;
+import es.urjc.etsii.grafo.CLSP.model.CLSPSolution;
+import es.urjc.etsii.grafo.CLSP.model.moves.EfficientInsertMove;
+import es.urjc.etsii.grafo.CLSP.model.neighborhoods.EfficientInsertNeighborhood;
+import es.urjc.etsii.grafo.algorithms.Algorithm;
+import es.urjc.etsii.grafo.create.Constructive;
+import es.urjc.etsii.grafo.util.DoubleComparator;
+import es.urjc.etsii.grafo.util.TimeControl;
+
+/**
+ * Tabu search over the insert neighborhood. In each iteration, the best admissible insert move is executed, even if it
+ * does not improve the solution, so the search leaves the local optima instead of restarting from a shaken solution.
+ * <p>
+ * After moving a work slot to another machine, its part cannot return to the initial machine for "tenure" iterations.
+ * After moving a work slot inside a machine, its part cannot be moved back to the initial position of that machine for
+ * "tenure" iterations. Both attributes are stored in arrays indexed by part, with the last iteration in which they are
+ * tabu, so checking a move takes constant time. A tabu move is admissible if it improves the best solution found
+ * (aspiration by the incumbent score).
+ * <p>
+ * The search ends when the time is up, when the best solution has not improved in a given number of iterations, or
+ * when there are no admissible moves.
+ */
+public class TabuSearch extends Algorithm<CLSPSolution, CLSPInstance> {
+
+    private final Constructive<CLSPSolution, CLSPInstance> constructive;
+    private final EfficientInsertNeighborhood neighborhood;
+    private final int tenure;
+    private final int maxIterationsWithoutImprovement;
+
+    /**
+     * Creates a new tabu search
+     *
+     * @param name                            Algorithm name
+     * @param constructive                    Constructive of the initial solution
+     * @param neighborhood                    Insert neighborhood used to evaluate the moves
+     * @param tenure                          Number of iterations an attribute stays tabu
+     * @param maxIterationsWithoutImprovement Number of iterations without improving the best solution before stopping
+     */
+    public TabuSearch(String name, Constructive<CLSPSolution, CLSPInstance> constructive, EfficientInsertNeighborhood neighborhood, int tenure, int maxIterationsWithoutImprovement) {
+        super(name);
+        if (tenure < 0) {
+            throw new IllegalArgumentException("The tabu tenure cannot be negative: " + tenure);
+        }
+        if (maxIterationsWithoutImprovement < 1) {
+            throw new IllegalArgumentException("The number of iterations without improvement must be at least 1: " + maxIterationsWithoutImprovement);
+        }
+        this.constructive = constructive;
+        this.neighborhood = neighborhood;
+        this.tenure = tenure;
+        this.maxIterationsWithoutImprovement = maxIterationsWithoutImprovement;
+    }
+
+    @Override
+    public CLSPSolution algorithm(CLSPInstance instance) {
+        CLSPSolution current = constructive.construct(new CLSPSolution(instance));
+        CLSPSolution best = current.cloneSolution();
+
+        var tabu = new TabuList(instance.getNumParts(), instance.getNumMachines());
+        int iteration = 0;
+        int iterationsWithoutImprovement = 0;
+        while (iterationsWithoutImprovement < maxIterationsWithoutImprovement && !TimeControl.isTimeUp()) {
+            iteration++;
+            final int now = iteration;
+            EfficientInsertMove move = neighborhood.bestAdmissibleMove(current,
+                    (partId, machineIni, posIni, machineEnd, posEnd) -> tabu.isTabu(now, partId, machineIni, machineEnd, posEnd),
+                    best.getScore() - current.getScore());
+            if (move == null) {
+                break;
+            }
+
+            int partId = current.getSchedule(move.getInitialMachineId()).getPartId(move.getInitialPosition());
+            move.execute(current);
+            tabu.add(now + tenure, partId, move.getInitialMachineId(), move.getInitialPosition(), move.getFinalMachineId());
+
+            if (DoubleComparator.isLess(current.getScore(), best.getScore())) {
+                best = current.cloneSolution();
+                iterationsWithoutImprovement = 0;
+            } else {
+                iterationsWithoutImprovement++;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Tabu attributes of the moves, with the last iteration in which each one is tabu
+     */
+    private static final class TabuList {
+        private final int numMachines;
+        // Part cannot be inserted in a machine, indexed by part * numMachines + machine
+        private final int[] machineTabu;
+        // Part cannot be moved to a position of a machine
+        private final int[] positionTabu;
+        private final int[] positionMachine;
+        private final int[] position;
+
+        TabuList(int numParts, int numMachines) {
+            this.numMachines = numMachines;
+            this.machineTabu = new int[numParts * numMachines];
+            this.positionTabu = new int[numParts];
+            this.positionMachine = new int[numParts];
+            this.position = new int[numParts];
+        }
+
+        boolean isTabu(int iteration, int partId, int machineIni, int machineEnd, int posEnd) {
+            if (machineIni != machineEnd) {
+                return machineTabu[partId * numMachines + machineEnd] >= iteration;
+            }
+            return positionTabu[partId] >= iteration && positionMachine[partId] == machineEnd && position[partId] == posEnd;
+        }
+
+        void add(int until, int partId, int machineIni, int posIni, int machineEnd) {
+            if (machineIni != machineEnd) {
+                machineTabu[partId * numMachines + machineIni] = until;
+            } else {
+                positionTabu[partId] = until;
+                positionMachine[partId] = machineIni;
+                position[partId] = posIni;
+            }
+        }
+    }
+}
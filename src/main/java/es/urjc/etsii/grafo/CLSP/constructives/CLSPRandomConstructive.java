@@ -16,7 +16,6 @@ public class CLSPRandomConstructive extends Constructive<CLSPSolution, CLSPInsta
         // IN --> Empty solution from solution(instance) constructor
         // OUT --> Feasible solution with an assigned score
         int numParts = solution.getInstance().getNumParts();
-        int numMachines = solution.getInstance().getNumMachines();
         int numPeriods = solution.getInstance().getNumPeriods();
 
         // For each product, obtain the maximum number of units that are needed according to last week inventory.
@@ -32,10 +31,8 @@ public class CLSPRandomConstructive extends Constructive<CLSPSolution, CLSPInsta
             int rndPart =  (int) pendingParts.keySet().toArray()[(int) (RandomManager.getRandom().nextDouble() * (pendingParts.size()-1))];
 
             // Randomly select a VALID machine (production rate > 0)
-            int rndMachine;
-            do {
-                rndMachine = (int) (RandomManager.getRandom().nextDouble() * (numMachines));
-            } while (solution.getInstance().productionRate[rndPart][rndMachine] == 0);
+            int[] machines = solution.getInstance().getCapableMachines(rndPart);
+            int rndMachine = machines[(int) (RandomManager.getRandom().nextDouble() * machines.length)];
 
             // Random selection of a part remaining production amount
             double duration;
@@ -0,0 +1,84 @@
+package es.urjc.etsii.grafo.CLSP.constructives;
+
+import es.urjc.etsii.grafo.CLSP.model.CLSPInstance;
+import es.urjc.etsii.grafo.CLSP.model.CLSPSolution;
+import es.urjc.etsii.grafo.create.Constructive;
+import es.urjc.etsii.grafo.util.DoubleComparator;
+import es.urjc.etsii.grafo.util.random.RandomManager;
+import es.urjc.etsii.grafo.util.random.RandomType;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Multi-start constructive: builds several solutions in parallel with the given constructive and returns the best
+ * one. Every start begins from the solution given to construct and runs as a task in the common ForkJoinPool, with
+ * its own random generator installed in the thread that runs it. The seeds of the generators are drawn from the random
+ * generator of the calling thread before starting, so the result only depends on the seed of the solver and not on
+ * the number of threads or the order in which the starts finish. Ties are broken by the order of the starts.
+ * <p>
+ * It is intended to give a single instance the whole machine, so the parallel executor of the solver should be
+ * disabled when using it. The constructive must not keep state between calls.
+ */
+public class MultiStartConstructive extends Constructive<CLSPSolution, CLSPInstance> {
+
+    private final Constructive<CLSPSolution, CLSPInstance> constructive;
+    private final int numberOfStarts;
+
+    /**
+     * Creates a new multi-start constructive
+     *
+     * @param constructive   Constructive used in every start
+     * @param numberOfStarts Number of solutions built in each call
+     */
+    public MultiStartConstructive(Constructive<CLSPSolution, CLSPInstance> constructive, int numberOfStarts) {
+        if (numberOfStarts < 1) {
+            throw new IllegalArgumentException("The number of starts must be at least 1: " + numberOfStarts);
+        }
+        this.constructive = constructive;
+        this.numberOfStarts = numberOfStarts;
+    }
+
+    @Override
+    public CLSPSolution construct(CLSPSolution solution) {
+        // Seeds are drawn sequentially to make the result reproducible. The last one is for the calling thread
+        int[] seeds = new int[numberOfStarts + 1];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = RandomManager.getRandom().nextInt();
+        }
+
+        // The last start builds the given solution, so the copies are taken before it is modified
+        CLSPSolution[] starts = new CLSPSolution[numberOfStarts];
+        for (int i = 0; i < numberOfStarts - 1; i++) {
+            starts[i] = solution.cloneSolution();
+        }
+        starts[numberOfStarts - 1] = solution;
+
+        // The stream is ordered, so the solutions are collected in the order of the starts
+        List<CLSPSolution> solutions = IntStream.range(0, numberOfStarts).parallel()
+                .mapToObj(i -> {
+                    RandomManager.localConfiguration(RandomType.DEFAULT, seeds[i]);
+                    return constructive.construct(starts[i]);
+                })
+                .toList();
+
+        // The calling thread may have run some of the starts, so its generator depends on the scheduling
+        RandomManager.localConfiguration(RandomType.DEFAULT, seeds[numberOfStarts]);
+
+        CLSPSolution best = solutions.get(0);
+        for (CLSPSolution s : solutions) {
+            if (DoubleComparator.isLess(s.getScore(), best.getScore())) {
+                best = s;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public String toString() {
+        return "MultiStart{" +
+                "starts=" + numberOfStarts +
+                ", constructive=" + constructive +
+                '}';
+    }
+}
@@ -27,10 +27,8 @@ public class SmallPiecesHeuristicConstructive extends Constructive<CLSPSolution,
         // Assign slots to machines
         for (WorkSlot slot : slots) {
             // Randomly select a VALID machine (production rate > 0)
-            int rndMachine;
-            do {
-                rndMachine = (int) (RandomManager.getRandom().nextDouble() * solution.getInstance().getNumMachines());
-            } while (solution.getInstance().productionRate[slot.getPartId()][rndMachine] == 0);
+            int[] machines = solution.getInstance().getCapableMachines(slot.getPartId());
+            int rndMachine = machines[(int) (RandomManager.getRandom().nextDouble() * machines.length)];
             solution.addWorkSlot(rndMachine,new WorkSlot(slot));
         }
 
@@ -1,5 +1,6 @@
 package es.urjc.etsii.grafo.CLSP.constructives.grasp;
 
+import es.urjc.etsii.grafo.CLSP.model.AppendEvaluator;
 import es.urjc.etsii.grafo.CLSP.model.CLSPInstance;
 import es.urjc.etsii.grafo.CLSP.model.CLSPSolution;
 import es.urjc.etsii.grafo.CLSP.model.WorkSlot;
@@ -8,7 +9,9 @@ import es.urjc.etsii.grafo.solution.EagerMove;
 import es.urjc.etsii.grafo.util.DoubleComparator;
 import es.urjc.etsii.grafo.util.random.RandomManager;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class CLSPListManager extends GRASPListManager<CLSPListManager.CLSPGRASPMove, CLSPSolution, CLSPInstance> {
 
@@ -27,30 +30,23 @@ public class CLSPListManager extends GRASPListManager<CLSPListManager.CLSPGRASPM
             // Select a random workslot
             WorkSlot rndWorkSlot = solution.getUnassignedWorkSlots().get((int) (RandomManager.getRandom().nextDouble() * (solution.getUnassignedWorkSlots().size() - 1)));
             // Randomly select a VALID machine (production rate > 0)
-            int rndMachine;
-            do {
-                rndMachine = (int) (RandomManager.getRandom().nextDouble() * (solution.getInstance().getNumMachines()));
-            } while (solution.getInstance().productionRate[rndWorkSlot.getPartId()][rndMachine] == 0);
+            int[] machines = solution.getInstance().getCapableMachines(rndWorkSlot.getPartId());
+            int rndMachine = machines[(int) (RandomManager.getRandom().nextDouble() * machines.length)];
             // Create a move with the selected parameters
             CLSPGRASPMove move = new CLSPGRASPMove(solution, rndMachine, rndWorkSlot);
             // Execute the move to get a more precise score of the move (all the structures are completely updated)
             move._execute(solution);
         }
 
+        // Candidates are costed with the incremental evaluation of the appended work slot, without cloning the
+        // solution. Interchangeable work slots have the same cost, so it is only calculated once per candidate class
+        var appendEvaluator = new AppendEvaluator(solution);
+        Map<CandidateClass, Double> costs = new HashMap<>();
         for (WorkSlot ws : solution.getUnassignedWorkSlots()) {
-            for (int machine = 0; machine < solution.getInstance().getNumMachines(); machine++) {
-                if (solution.getInstance().productionRate[ws.getPartId()][machine] > 0) {
-                    // TODO: the calculation of the cost can be optimized
-                    CLSPSolution copy = new CLSPSolution(solution);
-                    // Create a move with the selected parameters
-                    CLSPGRASPMove copyMove = new CLSPGRASPMove(copy, machine, new WorkSlot(ws));
-                    // Execute the move
-                    copyMove._execute(copy);
-                    double sc = copy.recalculateScore();
-                    double moveCost = sc - solution.getScore();
-                    var move = new CLSPGRASPMove(solution, machine, ws, moveCost);
-                    list.add(move);
-                }
+            for (int machine : solution.getInstance().getCapableMachines(ws.getPartId())) {
+                double moveCost = costs.computeIfAbsent(new CandidateClass(machine, ws), c -> appendCost(solution, appendEvaluator, c));
+                var move = new CLSPGRASPMove(solution, machine, ws, moveCost);
+                list.add(move);
             }
         }
 
@@ -74,6 +70,42 @@ public class CLSPListManager extends GRASPListManager<CLSPListManager.CLSPGRASPM
     }
 
 
+    /**
+     * Cost of appending a work slot of the given class at the end of its machine, without modifying the solution
+     *
+     * @param solution  Current solution
+     * @param evaluator Append evaluator of the current solution
+     * @param c         Candidate class
+     * @return difference between the score after and before appending the work slot
+     */
+    protected double appendCost(CLSPSolution solution, AppendEvaluator evaluator, CandidateClass c) {
+        // CHANGEOVER TIME:
+        double changeoverTime = solution.getChangeoverTime();
+        // Add changeover time if the machine has workslots
+        if (solution.getNumberOfMachineWorkSlots(c.machine()) > 0) {
+            int prev = solution.getSchedule(c.machine()).getPartId(solution.getNumberOfMachineWorkSlots(c.machine()) - 1);
+            changeoverTime += solution.getInstance().changeoverTime[prev][c.partId()];
+        }
+        // SHORTAGE:
+        // Only the changeover from the last work slot of the machine and the production of the new one are
+        // simulated, from the tail state of the machine
+        double shortage = evaluator.calculateShortageAfterAppend(c.machine(), c.partId(), c.duration());
+        double newScore = solution.scoreCalculation(changeoverTime, shortage);
+        return newScore - solution.getScore();
+    }
+
+    /**
+     * Candidates that always have the same cost: work slots with the same part and duration added to the same
+     * machine. The instance generates many identical work slots for each part, so each class is only costed once
+     * when the candidate list is built or updated, and every work slot of the class keeps its own candidate, so
+     * the selection of the constructive does not change.
+     */
+    protected record CandidateClass(int machine, int partId, double duration) {
+        CandidateClass(int machine, WorkSlot workSlot) {
+            this(machine, workSlot.getPartId(), workSlot.getDuration());
+        }
+    }
+
     // This is going to be an ADD move
     public static class CLSPGRASPMove extends EagerMove<CLSPSolution, CLSPInstance> {
         protected final int machine;
@@ -100,16 +132,17 @@ public class CLSPListManager extends GRASPListManager<CLSPListManager.CLSPGRASPM
             // newWorkSlot is updated in addWorkSlot method
             solution.addWorkSlot(machine, newWorkSlot);
             // Update machineWeeklyProducedParts
+            int[][] machineWeeklyProducedParts = solution.getWritableMachineWeeklyProducedParts(machine);
             // Take into account change of period only if the workslot is not reaching the end of the horizon
             // We have to accumulate in the end period the units produced in the previous period.
             if ((newWorkSlot.getIniPeriod() != newWorkSlot.getEndPeriod()) &&
                     (newWorkSlot.getIniPeriod() < solution.getInstance().getNumPeriods()) &&
                     (newWorkSlot.getEndPeriod() < solution.getInstance().getNumPeriods())) {
-                solution.getMachineWeeklyProducedParts()[machine][newWorkSlot.getEndPeriod()][newWorkSlot.getPartId()] += (int) Math.ceil((solution.getInstance().getMachineCapacity(machine, newWorkSlot.getIniPeriod()) - newWorkSlot.getIniTime()) * solution.getInstance().productionRate[newWorkSlot.getPartId()][machine]);
+                machineWeeklyProducedParts[newWorkSlot.getEndPeriod()][newWorkSlot.getPartId()] += (int) Math.ceil((solution.getInstance().getMachineCapacity(machine, newWorkSlot.getIniPeriod()) - newWorkSlot.getIniTime()) * solution.getInstance().productionRate[newWorkSlot.getPartId()][machine]);
             }
             // Update the rest of the periods
             for (int i = newWorkSlot.getEndPeriod() + 1; i < solution.getInstance().getNumPeriods(); i++) {
-                solution.getMachineWeeklyProducedParts()[machine][i][newWorkSlot.getPartId()] = solution.getMachineWeeklyProducedParts()[machine][i - 1][newWorkSlot.getPartId()];
+                machineWeeklyProducedParts[i][newWorkSlot.getPartId()] = machineWeeklyProducedParts[i - 1][newWorkSlot.getPartId()];
             }
             solution.accumulateWeeklyProductionAndCalculatesScore(false);
             // Return true if the solution is modified,
@@ -1,10 +1,12 @@
 package es.urjc.etsii.grafo.CLSP.constructives.grasp;
 
+import es.urjc.etsii.grafo.CLSP.model.AppendEvaluator;
 import es.urjc.etsii.grafo.CLSP.model.CLSPSolution;
-import es.urjc.etsii.grafo.CLSP.model.WorkSlot;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class CLSPListManagerEfficient extends CLSPListManager {
 
@@ -23,6 +25,8 @@ public class CLSPListManagerEfficient extends CLSPListManager {
     public List<CLSPGRASPMove> updateCandidateList(CLSPSolution solution, CLSPGRASPMove move, List<CLSPGRASPMove> candidateList, int index) {
 
         List<CLSPGRASPMove> newCandidateList = new ArrayList<>(candidateList.size()-1);
+        var appendEvaluator = new AppendEvaluator(solution);
+        Map<CandidateClass, Double> costs = new HashMap<>();
 
         // List can be partially updated / modified
         for (int idx = 0; idx < candidateList.size(); idx++) {
@@ -35,46 +39,11 @@ public class CLSPListManagerEfficient extends CLSPListManager {
             if (candidateList.get(idx).workSlot == move.workSlot)
                 continue;
 
-            // CHANGEOVER TIME:
-            double changeoverTime = solution.getChangeoverTime();
-            // Add changeover time if the machine has workslots
-            if (solution.getNumberOfMachineWorkSlots()[machine] > 0) {
-                WorkSlot prev = solution.getSolutionData()[machine][solution.getNumberOfMachineWorkSlots()[machine] - 1];
-                changeoverTime += solution.getInstance().changeoverTime[prev.getPartId()][candidateMove.workSlot.getPartId()];
-            }
-            // SHORTAGE:
-            // Create new workslot sequence and calculate cost
-            WorkSlot[] afterMoveEnd = new WorkSlot[solution.getNumberOfMachineWorkSlots()[machine] + 1];
-            for (int i = 0; i < solution.getNumberOfMachineWorkSlots()[machine]; i++) {
-                // Need to copy the workslot to not modify the solution (Mork requires this)
-                afterMoveEnd[i] = new WorkSlot(solution.getSolutionData()[machine][i]);
-            }
-            // Add new workslot to the end of the machine
-            afterMoveEnd[afterMoveEnd.length - 1] = candidateMove.workSlot;
-
-            // Machine weekly produced parts for the move (different machines)
-            int[][] machineIniWeeklyProducedParts = new int[solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
-            int[][][] newWeeklyProducedParts = new int[solution.getInstance().getNumMachines()][solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
-
-            // Calculate this machine's weekly production --> Use machineIniWeeklyProducedParts
-            CLSPSolution.calculateMachineWeeklyProducedParts(solution.getInstance(), machineIniWeeklyProducedParts, afterMoveEnd, afterMoveEnd.length, machine);
-
-            // Accumulate using the other machines' weekly production
-            for (int machineId = 0; machineId < solution.getInstance().getNumMachines(); machineId++)
-                if (machineId == machine) {
-                    newWeeklyProducedParts[machineId] = machineIniWeeklyProducedParts;
-                } else {
-                    newWeeklyProducedParts[machineId] = solution.getMachineWeeklyProducedParts()[machineId];
-                }
-
-            // Calculate score
-            var weeklyProductShortage = new int[solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
-            var newWeeklyShortage = solution.fullCalculateWeeklyShortage(newWeeklyProducedParts, weeklyProductShortage);
-            double shortage = solution.calculateShortageFunction(newWeeklyShortage);
-            double newScore = solution.scoreCalculation(changeoverTime, shortage);
+            // Interchangeable work slots are only costed once
+            double moveCost = costs.computeIfAbsent(new CandidateClass(machine, candidateMove.workSlot), c -> appendCost(solution, appendEvaluator, c));
 
             // A new move has to be created to avoid modifying the original candidate list
-            newCandidateList.add(new CLSPGRASPMove(solution, machine, candidateMove.workSlot, newScore - solution.getScore()));
+            newCandidateList.add(new CLSPGRASPMove(solution, machine, candidateMove.workSlot, moveCost));
         }
 
         return newCandidateList;
@@ -93,7 +93,13 @@ public class CLSPExactModel extends Constructive<CLSPSolution, CLSPInstance> {
                     // Process solution: each line is "Line	Part	Priority	Hours	Produced_Parts	Period"
                     while ((line = reader.readLine()) != null) {
                         String[] parts = line.split("\t");
-                        WorkSlot ws = new WorkSlot(Integer.parseInt(parts[1]), Double.parseDouble(parts[3]));
+                        // The model uses the part identifiers of the file, and the parts that can never be short are
+                        // not in the instance
+                        int partId = solution.getInstance().getPartId(Integer.parseInt(parts[1]));
+                        if (partId < 0) {
+                            continue;
+                        }
+                        WorkSlot ws = new WorkSlot(partId, Double.parseDouble(parts[3]));
                         solution.addWorkSlot(Integer.parseInt(parts[0]), ws);
                     }
                     break;
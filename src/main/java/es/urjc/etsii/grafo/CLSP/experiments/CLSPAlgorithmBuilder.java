@@ -1,8 +1,14 @@
 package es.urjc.etsii.grafo.CLSP.experiments;
 
+import es.urjc.etsii.grafo.CLSP.algorithms.ParallelVNS;
+import es.urjc.etsii.grafo.CLSP.algorithms.SimulatedAnnealing;
+import es.urjc.etsii.grafo.CLSP.algorithms.TabuSearch;
 import es.urjc.etsii.grafo.CLSP.constructives.CLSPRandomConstructive;
+import es.urjc.etsii.grafo.CLSP.constructives.MultiStartConstructive;
 import es.urjc.etsii.grafo.CLSP.constructives.grasp.CLSPListManagerEfficient;
+import es.urjc.etsii.grafo.CLSP.improvers.DuplicateSkippingImprover;
 import es.urjc.etsii.grafo.CLSP.improvers.LocalSearchBestImprovementCollapsing;
+import es.urjc.etsii.grafo.CLSP.improvers.LocalSearchFirstImprovementCollapsing;
 import es.urjc.etsii.grafo.CLSP.model.CLSPInstance;
 import es.urjc.etsii.grafo.CLSP.model.CLSPSolution;
 import es.urjc.etsii.grafo.CLSP.model.neighborhoods.EfficientExchangeNeighborhood;
@@ -18,6 +24,7 @@ import es.urjc.etsii.grafo.create.grasp.GraspBuilder;
 import es.urjc.etsii.grafo.improve.Improver;
 import es.urjc.etsii.grafo.improve.VND;
 import es.urjc.etsii.grafo.improve.ls.LocalSearchBestImprovement;
+import es.urjc.etsii.grafo.improve.ls.LocalSearchFirstImprovement;
 import es.urjc.etsii.grafo.shake.RandomMoveShake;
 import es.urjc.etsii.grafo.solver.Mork;
 
@@ -34,6 +41,8 @@ public class CLSPAlgorithmBuilder extends AlgorithmBuilder<CLSPSolution, CLSPIns
         String constructiveParam = config.getValue("constructive").orElseThrow();
         String alpha = config.getValue("alpha").orElse("None");
         Double alphaValue = Double.valueOf(config.getValue("alphaValue").orElse("-1"));
+        // Number of solutions built in parallel in each call to the constructive, keeping the best one
+        int starts = Integer.parseInt(config.getValue("starts").orElse("1"));
 
         // Constructive method
         Constructive<CLSPSolution, CLSPInstance> constructiveMethod;
@@ -68,33 +77,68 @@ public class CLSPAlgorithmBuilder extends AlgorithmBuilder<CLSPSolution, CLSPIns
 
         }
 
+        if (starts > 1) {
+            constructiveMethod = new MultiStartConstructive(constructiveMethod, starts);
+        }
+
         // Algorithm type:
         String algorithmType = config.getValue("algorithm").orElseThrow();
 
         // Improver type: collapseFirst, collapseSecond
         String improverType = config.getValue("lsOrder").orElseThrow();
 
+        // Local search strategy: bestimprovement (default), firstimprovement
+        boolean firstImprovement = isFirstImprovement(config.getValue("localsearch").orElse("bestimprovement"));
+
+        // Parallel exploration of the best improvement neighborhoods, same results as the sequential one
+        boolean parallelExplore = Boolean.parseBoolean(config.getValue("parallelExplore").orElse("false"));
+
+        // Don't look bits in the best improvement neighborhoods
+        boolean dontLookBits = Boolean.parseBoolean(config.getValue("dontLookBits").orElse("false"));
+
+        // Only the best improvement neighborhoods support them
+        if (firstImprovement && (parallelExplore || dontLookBits)) {
+            throw new IllegalArgumentException("parallelExplore and dontLookBits are not supported by the first improvement local search");
+        }
+
+        // Do not improve again the solutions already visited in the same run
+        boolean skipDuplicates = Boolean.parseBoolean(config.getValue("skipDuplicates").orElse("false"));
+
         // Part of the algorithm's name
         String name = algorithmType + "_" + constructiveParam.substring(constructiveParam.length()-3) + "_" + alphaValue + "_" + improverType;
+        if (firstImprovement)
+            name += "_fi";
+        if (parallelExplore)
+            name += "_px";
+        if (dontLookBits)
+            name += "_dlb";
+        if (starts > 1)
+            name += "_ms" + starts;
+        if (skipDuplicates)
+            name += "_sd";
+
+        // maxK of the VNS algorithms depends on instance size: lambda expression
+        VNS.KMapper<CLSPSolution, CLSPInstance> maxK = null;
+        if (algorithmType.equals("vns") || algorithmType.equals("gvns") || algorithmType.equals("pvns")) {
+            Double maxKpct = Double.valueOf(config.getValue("maxKpct").orElseThrow());
+            maxK = (solution, k) -> k >= (maxKpct * solution.getInstance().getNumFileParts())? STOPNOW : k;
+        }
 
                 switch (algorithmType) {
             case "grasp":
                 var grasp = new SimpleAlgorithm<>(name,
                     constructiveMethod,
-                    getImprover(improverType,false));
+                    getImprover(improverType,false,firstImprovement,parallelExplore,dontLookBits,skipDuplicates));
                 return grasp;
             case "vns":
             case "gvns":
-                // maxK depends on instance size: lambda expression
-                Double maxKpct = Double.valueOf(config.getValue("maxKpct").orElseThrow());
-                VNS.KMapper<CLSPSolution, CLSPInstance> maxK = (solution, k) -> k >= (maxKpct * solution.getInstance().getNumParts())? STOPNOW : k;
                 var shake = new RandomMoveShake<>(1, new EfficientExchangeNeighborhood());
                 if (algorithmType.equals("vns")) {
                     VNS<CLSPSolution, CLSPInstance> vns = new VNS<>(name,
                             maxK,
                             constructiveMethod,
                             shake,
-                            getImprover(improverType,false)
+                            getImprover(improverType,false,firstImprovement,parallelExplore,dontLookBits,skipDuplicates)
                     );
 
                     return vns;
@@ -103,38 +147,103 @@ public class CLSPAlgorithmBuilder extends AlgorithmBuilder<CLSPSolution, CLSPIns
                             maxK,
                             constructiveMethod,
                             shake,
-                            getImprover(improverType,true)
+                            getImprover(improverType,true,firstImprovement,parallelExplore,dontLookBits,skipDuplicates)
                     );
                     return gvns;
                 }
+            case "pvns":
+                // Island model VNS, each island is a VNS with the same configuration
+                // Fixed default, so the name and the results do not depend on the host
+                int islands = Integer.parseInt(config.getValue("islands").orElse("8"));
+                int migration = Integer.parseInt(config.getValue("migration").orElse("10"));
+                return new ParallelVNS(name + "_" + islands,
+                        islands,
+                        migration,
+                        maxK,
+                        constructiveMethod,
+                        new EfficientExchangeNeighborhood(),
+                        getImprover(improverType,false,firstImprovement,parallelExplore,dontLookBits,skipDuplicates)
+                );
+            case "tabu":
+                // Tabu search over the insert neighborhood, it does not use the improver
+                int tenure = Integer.parseInt(config.getValue("tenure").orElse("10"));
+                int maxNoImprove = Integer.parseInt(config.getValue("maxNoImprove").orElse("1000"));
+                return new TabuSearch(name + "_" + tenure,
+                        constructiveMethod,
+                        new EfficientInsertNeighborhood(1, parallelExplore),
+                        tenure,
+                        maxNoImprove
+                );
+            case "sa":
+                // Simulated annealing with random insert and exchange moves, it does not use the improver
+                return new SimulatedAnnealing(name,
+                        constructiveMethod,
+                        Double.parseDouble(config.getValue("insertProbability").orElse("0.5")),
+                        Double.parseDouble(config.getValue("initialTemperature").orElse("0.01")),
+                        Double.parseDouble(config.getValue("finalTemperature").orElse("0.000001")),
+                        SimulatedAnnealing.CoolingSchedule.fromString(config.getValue("cooling").orElse("geometric")),
+                        Double.parseDouble(config.getValue("coolingRate").orElse("0.95")),
+                        Integer.parseInt(config.getValue("movesPerTemperature").orElse("1000")),
+                        Double.parseDouble(config.getValue("reheatSeconds").orElse("0"))
+                );
             default:
                 throw new IllegalArgumentException("Unknown algorithm type: " + algorithmType);
         }
 
     }
 
-    private Improver<CLSPSolution, CLSPInstance> getImprover(String improverType, boolean isVND) {
+    private boolean isFirstImprovement(String localSearch) {
+        switch (localSearch) {
+            case "bestimprovement":
+                return false;
+            case "firstimprovement":
+                return true;
+            default:
+                throw new IllegalArgumentException("Unknown local search: " + localSearch);
+        }
+    }
+
+    private Improver<CLSPSolution, CLSPInstance> getImprover(String improverType, boolean isVND, boolean firstImprovement, boolean parallelExplore, boolean dontLookBits, boolean skipDuplicates) {
+        Improver<CLSPSolution, CLSPInstance> improver = getImprover(improverType, isVND, firstImprovement, parallelExplore, dontLookBits);
+        return skipDuplicates ? new DuplicateSkippingImprover(FMode.MINIMIZE, improver) : improver;
+    }
+
+    private Improver<CLSPSolution, CLSPInstance> getImprover(String improverType, boolean isVND, boolean firstImprovement, boolean parallelExplore, boolean dontLookBits) {
+        Improver<CLSPSolution, CLSPInstance> collapsing = getLocalSearch(true, firstImprovement, parallelExplore, dontLookBits);
+        Improver<CLSPSolution, CLSPInstance> notCollapsing = getLocalSearch(false, firstImprovement, parallelExplore, dontLookBits);
         switch (improverType) {
             case "collapseFirst":
                 if (isVND) {
-                    return VND.serial(FMode.MINIMIZE, new LocalSearchBestImprovementCollapsing(FMode.MINIMIZE, new EfficientInsertNeighborhood()),
-                            new LocalSearchBestImprovement<>(FMode.MINIMIZE, new EfficientInsertNeighborhood()));
+                    return VND.serial(FMode.MINIMIZE, collapsing, notCollapsing);
                 } else {
-                    return Improver.serial(FMode.MINIMIZE, new LocalSearchBestImprovementCollapsing(FMode.MINIMIZE, new EfficientInsertNeighborhood()),
-                            new LocalSearchBestImprovement<>(FMode.MINIMIZE, new EfficientInsertNeighborhood()));
+                    return Improver.serial(FMode.MINIMIZE, collapsing, notCollapsing);
                 }
             case "collapseSecond":
                 if (isVND) {
-                    return VND.serial(FMode.MINIMIZE, new LocalSearchBestImprovement<>(FMode.MINIMIZE, new EfficientInsertNeighborhood()),
-                            new LocalSearchBestImprovementCollapsing(FMode.MINIMIZE, new EfficientInsertNeighborhood()));
+                    return VND.serial(FMode.MINIMIZE, notCollapsing, collapsing);
                 } else {
-                    return Improver.serial(FMode.MINIMIZE, new LocalSearchBestImprovement<>(FMode.MINIMIZE, new EfficientInsertNeighborhood()),
-                            new LocalSearchBestImprovementCollapsing(FMode.MINIMIZE, new EfficientInsertNeighborhood()));
+                    return Improver.serial(FMode.MINIMIZE, notCollapsing, collapsing);
                 }
             default:
                 throw new IllegalArgumentException("Unknown improver type: " + improverType);
         }
     }
 
+    /**
+     * Insert local search. Best improvement only keeps the best move of each exploration, while first improvement
+     * generates the moves lazily and stops at the first improving one.
+     */
+    private Improver<CLSPSolution, CLSPInstance> getLocalSearch(boolean collapsing, boolean firstImprovement, boolean parallelExplore, boolean dontLookBits) {
+        if (firstImprovement) {
+            var neighborhood = new EfficientInsertNeighborhood(true);
+            return collapsing ? new LocalSearchFirstImprovementCollapsing(FMode.MINIMIZE, neighborhood)
+                    : new LocalSearchFirstImprovement<>(FMode.MINIMIZE, neighborhood);
+        } else {
+            var neighborhood = new EfficientInsertNeighborhood(1, parallelExplore, dontLookBits);
+            return collapsing ? new LocalSearchBestImprovementCollapsing(FMode.MINIMIZE, neighborhood)
+                    : new LocalSearchBestImprovement<>(FMode.MINIMIZE, neighborhood);
+        }
+    }
+
 
 }
@@ -0,0 +1,43 @@
+package es.urjc.etsii.grafo.CLSP.improvers;
+
+import es.urjc.etsii.grafo.CLSP.model.CLSPInstance;
+import es.urjc.etsii.grafo.CLSP.model.CLSPSolution;
+import es.urjc.etsii.grafo.algorithms.FMode;
+import es.urjc.etsii.grafo.improve.Improver;
+
+/**
+ * Improver that does not improve again the solutions already visited in the same run. The fingerprints of the
+ * improved solutions and of the local optima reached from them are kept in the visited solutions of the solution,
+ * which is shared by its clones, so VNS restarts and the islands of a parallel VNS skip the local searches whose
+ * result is already known. A skipped solution is returned as it is, and counted in the "SkippedDuplicates" property.
+ * <p>
+ * A local optimum is returned as it is by the local search anyway, so skipping it does not change the result. A
+ * solution that was improved before is not improved again, which only loses a local optimum already visited.
+ */
+public class DuplicateSkippingImprover extends Improver<CLSPSolution, CLSPInstance> {
+
+    private final Improver<CLSPSolution, CLSPInstance> improver;
+
+    /**
+     * Creates a new duplicate skipping improver
+     *
+     * @param fmode    Objective function mode
+     * @param improver Improver applied to the solutions not visited before
+     */
+    public DuplicateSkippingImprover(FMode fmode, Improver<CLSPSolution, CLSPInstance> improver) {
+        super(fmode);
+        this.improver = improver;
+    }
+
+    @Override
+    protected CLSPSolution _improve(CLSPSolution solution) {
+        var visited = solution.getVisitedSolutions();
+        if (!visited.add(solution.getFingerprint())) {
+            visited.countSkipped();
+            return solution;
+        }
+        CLSPSolution improved = improver.improve(solution);
+        improved.getVisitedSolutions().add(improved.getFingerprint());
+        return improved;
+    }
+}
@@ -13,6 +13,16 @@ public class LocalSearchBestImprovementCollapsing extends LocalSearchBestImprove
         super(fmode, neighborhood);
     }
 
+    @Override
+    protected CLSPSolution _improve(CLSPSolution solution) {
+        // The don't look bits of the collapsed work slots are kept between iterations, but they are not valid for
+        // the uncollapsed ones, nor the other way round
+        solution.clearDontLook();
+        CLSPSolution improved = super._improve(solution);
+        improved.clearDontLook();
+        return improved;
+    }
+
     @Override
     public boolean iteration(CLSPSolution solution) {
 
@@ -0,0 +1,145 @@
+package es.urjc.etsii.grafo.CLSP.model;
+
+/**
+ * Evaluates the shortage of appending a work slot at the end of a machine, as the GRASP constructive does, without
+ * copying or simulating the schedule of the machine. Appending a work slot does not change the production of the
+ * previous work slots: it only adds the changeover from the last part and the production of the new work slot. So
+ * the evaluation starts from the tail state of the machine (the simulation state after its last work slot, kept
+ * with the checkpoints of its schedule) and only visits the periods of the appended part, in O(periods).
+ * <p>
+ * The result is the same as simulating the whole machine with the new work slot and calling
+ * {@link CLSPSolution#calculateShortageAfterChange}. The weekly production stored for a machine by the constructive
+ * may differ from the simulated one, so the shortage of replacing it by the simulated production is calculated once
+ * per machine when the evaluator is created.
+ * <p>
+ * It is only valid while the solution does not change. It is not modified after creation, so it can be shared by
+ * several threads.
+ */
+public class AppendEvaluator {
+
+    private final CLSPSolution solution;
+    private final CLSPInstance instance;
+
+    // Tail state of each machine: simulation state after the last work slot, and its part (-1 if it is empty)
+    private final CLSPSolution.SimulationState[] tails;
+    private final int[] lastPart;
+
+    // Accumulated simulated production (period, part) of the machines whose stored production is different, null
+    // if it is the same
+    private final int[][][] simulatedProduction;
+
+    // Shortage of the solution if the stored production of each machine is replaced by the simulated one
+    private final int[] baseShortage;
+
+    public AppendEvaluator(CLSPSolution solution) {
+        this.solution = solution;
+        this.instance = solution.getInstance();
+        int numMachines = instance.getNumMachines();
+        this.tails = new CLSPSolution.SimulationState[numMachines];
+        this.lastPart = new int[numMachines];
+        this.simulatedProduction = new int[numMachines][][];
+        this.baseShortage = new int[numMachines];
+
+        for (int machine = 0; machine < numMachines; machine++) {
+            MachineSchedule schedule = solution.getSchedule(machine);
+            schedule.ensureCheckpoints(instance, machine);
+            tails[machine] = new CLSPSolution.SimulationState(instance, machine);
+            schedule.loadCheckpoint(schedule.size(), tails[machine]);
+            lastPart[machine] = (schedule.size() > 0) ? schedule.getPartId(schedule.size() - 1) : -1;
+
+            int[][] simulated = simulatedIfDifferent(machine, schedule.getSimulatedIncrements(), solution.getMachineWeeklyProducedParts()[machine]);
+            if (simulated == null) {
+                baseShortage[machine] = solution.getWeeklyProducedPartsShortage();
+            } else {
+                simulatedProduction[machine] = simulated;
+                baseShortage[machine] = (int) solution.calculateShortageAfterChange(machine, simulated, machine, simulated);
+            }
+        }
+    }
+
+    /**
+     * Accumulates the simulated production of a machine and compares it with the stored one
+     *
+     * @param machine    Machine, only the parts that it is able to produce are compared
+     * @param increments Simulated production (period, part) before accumulating it
+     * @param stored     Stored weekly production (period, part) of the machine
+     * @return accumulated simulated production, or null if it is the same as the stored one
+     */
+    private int[][] simulatedIfDifferent(int machine, int[][] increments, int[][] stored) {
+        int[] accumulated = new int[instance.getNumParts()];
+        for (int period = 0; period < instance.getNumPeriods(); period++) {
+            for (int part : instance.getProducibleParts(machine)) {
+                accumulated[part] += increments[period][part];
+                if (accumulated[part] != stored[period][part]) {
+                    return accumulate(increments);
+                }
+            }
+        }
+        return null;
+    }
+
+    private int[][] accumulate(int[][] increments) {
+        int[][] accumulated = new int[instance.getNumPeriods()][];
+        for (int period = 0; period < instance.getNumPeriods(); period++) {
+            accumulated[period] = increments[period].clone();
+            if (period > 0) {
+                for (int part = 0; part < instance.getNumParts(); part++) {
+                    accumulated[period][part] += accumulated[period - 1][part];
+                }
+            }
+        }
+        return accumulated;
+    }
+
+    /**
+     * Shortage of the solution after appending a work slot at the end of a machine
+     *
+     * @param machineId Machine of the new work slot
+     * @param partId    Part of the new work slot
+     * @param duration  Duration of the new work slot
+     * @return shortage of the solution after the change
+     */
+    public double calculateShortageAfterAppend(int machineId, int partId, double duration) {
+        int numPeriods = instance.getNumPeriods();
+        int shortage = baseShortage[machineId];
+
+        var state = new CLSPSolution.SimulationState(instance, machineId);
+        state.period = tails[machineId].period;
+        state.offset = tails[machineId].offset;
+        state.capacity = tails[machineId].capacity;
+        if (state.period >= numPeriods) {
+            return shortage;
+        }
+        if (lastPart[machineId] >= 0 && lastPart[machineId] != partId) {
+            CLSPSolution.simulateChangeover(instance, lastPart[machineId], partId, state);
+        }
+        if (state.period >= numPeriods) {
+            return shortage;
+        }
+
+        // Production of the new work slot. Only the column of the part is used, so only this column is cleared
+        int[][] production = EvaluationWorkspace.get(instance).getIniMachineWeeklyProducedParts();
+        int firstPeriod = state.period;
+        for (int period = firstPeriod; period < numPeriods; period++) {
+            production[period][partId] = 0;
+        }
+        CLSPSolution.simulateProduction(instance, production, 1, partId, duration, machineId, state);
+
+        // Only the periods from the first one with production of the new work slot change
+        int[][] stored = solution.getMachineWeeklyProducedParts()[machineId];
+        int[][] simulated = simulatedProduction[machineId];
+        int[][] weeklyProducedParts = solution.getWeeklyProducedParts();
+        int added = 0;
+        for (int period = firstPeriod; period < numPeriods; period++) {
+            added += production[period][partId];
+            if (added != 0) {
+                int difference = weeklyProducedParts[period][partId] + instance.inventory[partId][period];
+                if (simulated != null) {
+                    difference += simulated[period][partId] - stored[period][partId];
+                }
+                shortage += CLSPSolution.cellShortage(difference + added) - CLSPSolution.cellShortage(difference);
+            }
+        }
+        return shortage;
+    }
+}
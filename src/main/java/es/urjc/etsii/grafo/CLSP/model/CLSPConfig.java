@@ -18,6 +18,8 @@ public class CLSPConfig {
 
     private String mhTimeLimitInSeconds;
 
+    private String instanceCacheDir;
+
     public String getMhTimeLimitInSeconds() {
         return mhTimeLimitInSeconds;
     }
@@ -49,4 +51,12 @@ public class CLSPConfig {
     public String getGurobiModelFile() {
         return gurobiModelFile;
     }
+
+    public String getInstanceCacheDir() {
+        return instanceCacheDir;
+    }
+
+    public void setInstanceCacheDir(String instanceCacheDir) {
+        this.instanceCacheDir = instanceCacheDir;
+    }
 }
@@ -21,43 +21,98 @@ public class CLSPInstance extends Instance {
     private final int[][] capacity;
     private final int[][] priority;
 
+    // Parts of the instance file. Parts that can never be short are removed from the instance (see obtainActiveParts),
+    // the data of the file is only used by the binary instance cache and to export the solutions
+    private final FileData fileData;
+    // Identifier in the instance file of each part
+    private final int[] partIds;
+
+    // Machines able to produce each part (production rate greater than zero)
+    private final int[][] capableMachines;
+    // Parts that each machine is able to produce (production rate greater than zero)
+    private final int[][] producibleParts;
+
     private final int maximumShortage;
     private final int minimumWorkload;
     private final int maximumWorkSlots;
     private final List<WorkSlot> slotsMinimumWorkload = new ArrayList<>();
     private final List<WorkSlot> slotsNoShortage = new ArrayList<>();
 
+    // Weekly production of the machine sequences already evaluated, created by the first search that uses it
+    private volatile ProductionProfileCache productionProfileCache;
+
+    /**
+     * Data calculated by the constructor from the data of the file, stored in the binary instance cache (see
+     * InstanceBinaryCache) so it is not calculated again
+     */
+    record DerivedData(int maximumShortage, int minimumWorkload, int maximumWorkSlots, List<WorkSlot> slotsMinimumWorkload, List<WorkSlot> slotsNoShortage) {
+    }
+
+    /**
+     * Data of the parts as read from the instance file, before removing the parts that can never be short
+     */
+    record FileData(int numParts, int[][] productionRate, int[][] changeoverTime, int[][] inventory, int[][] priority) {
+    }
+
     public CLSPInstance(String filename, int numParts, int numMachines, int numPeriods, int[][] productionRate, int[][] changeoverTime, int[][] inventory, int[][] capacity, int[][] priority) {
+        this(filename, numParts, numMachines, numPeriods, productionRate, changeoverTime, inventory, capacity, priority, null);
+    }
+
+    /**
+     * Creates an instance whose derived data may have been already calculated
+     *
+     * @param derived Derived data of the instance, or null to calculate it
+     */
+    CLSPInstance(String filename, int numParts, int numMachines, int numPeriods, int[][] productionRate, int[][] changeoverTime, int[][] inventory, int[][] capacity, int[][] priority, DerivedData derived) {
         super(filename);
-        this.numParts = numParts;
+        this.fileData = new FileData(numParts, copy(productionRate, numParts, numMachines), copy(changeoverTime, numParts, numParts), copy(inventory, numParts, numPeriods), copy(priority, numParts, numMachines));
+        this.partIds = obtainActiveParts(fileData.inventory());
+        this.numParts = partIds.length;
         this.numMachines = numMachines;
         this.numPeriods = numPeriods;
-        this.productionRate = new int[numParts][numMachines];
-        for (int i = 0; i < numParts; i++) {
-            System.arraycopy(productionRate[i], 0, this.productionRate[i], 0, numMachines);
-        }
-        this.changeoverTime = new int[numParts][numParts];
-        for (int i = 0; i < numParts; i++) {
-            System.arraycopy(changeoverTime[i], 0, this.changeoverTime[i], 0, numParts);
-        }
-        this.inventory = new int[numParts][numPeriods];
-        for (int i = 0; i < numParts; i++) {
-            System.arraycopy(inventory[i], 0, this.inventory[i], 0, numPeriods);
-        }
-        this.capacity = new int[numMachines][numPeriods];
-        for (int i = 0; i < numMachines; i++) {
-            System.arraycopy(capacity[i], 0, this.capacity[i], 0, numPeriods);
+        // Only the parts that can be short are kept, numbered in the order of the file
+        this.productionRate = new int[this.numParts][];
+        this.changeoverTime = new int[this.numParts][this.numParts];
+        this.inventory = new int[this.numParts][];
+        this.priority = new int[this.numParts][];
+        for (int i = 0; i < this.numParts; i++) {
+            this.productionRate[i] = fileData.productionRate()[partIds[i]].clone();
+            for (int j = 0; j < this.numParts; j++) {
+                this.changeoverTime[i][j] = fileData.changeoverTime()[partIds[i]][partIds[j]];
+            }
+            this.inventory[i] = fileData.inventory()[partIds[i]].clone();
+            this.priority[i] = fileData.priority()[partIds[i]].clone();
         }
-        this.priority = new int[numParts][numMachines];
-        for (int i = 0; i < numParts; i++) {
-            System.arraycopy(priority[i], 0, this.priority[i], 0, numMachines);
+        this.capacity = copy(capacity, numMachines, numPeriods);
+
+        capableMachines = obtainCapableMachines();
+        producibleParts = obtainProducibleParts();
+
+        if (derived != null) {
+            maximumShortage = derived.maximumShortage();
+            minimumWorkload = derived.minimumWorkload();
+            maximumWorkSlots = derived.maximumWorkSlots();
+            slotsMinimumWorkload.addAll(derived.slotsMinimumWorkload());
+            slotsNoShortage.addAll(derived.slotsNoShortage());
+        } else {
+            maximumShortage = obtainMaximumShortage();
+            minimumWorkload = obtainMinimumWorkload();
+            // The maximum number of work slots is the next integer value after -1.0 multiplied by the maximum shortage and divided by the minimum workload
+            maximumWorkSlots = (int) Math.ceil( ((-1.0) * maximumShortage) / minimumWorkload);
+            generateSlots();
         }
 
-        maximumShortage = obtainMaximumShortage();
-        minimumWorkload = obtainMinimumWorkload();
-        // The maximum number of work slots is the next integer value after -1.0 multiplied by the maximum shortage and divided by the minimum workload
-        maximumWorkSlots = (int) Math.ceil( ((-1.0) * maximumShortage) / minimumWorkload);
+        // Properties for the instance selection
+        this.setProperty("numParts", fileData.numParts());
+        this.setProperty("numMachines", numMachines);
+        this.setProperty("numPeriods", numPeriods);
+        this.setProperty("maximumShortage", maximumShortage);
+        this.setProperty("avgProductionRate", ArrayUtil.sum(ArrayUtil.flatten(fileData.productionRate())) / (fileData.numParts() * numMachines));
+        this.setProperty("avgInventory", ArrayUtil.sum(ArrayUtil.flatten(fileData.inventory())) / (fileData.numParts() * numPeriods));
 
+    }
+
+    private void generateSlots() {
         // Generate slots considering the inventory level and the PPH of each machine:
 
         // For each product, obtain the number of slots according to the number of hours needed according to last week inventory and PPH.
@@ -85,15 +140,6 @@ public class CLSPInstance extends Instance {
                 slotsNoShortage.add(new WorkSlot(p, minimumWorkload + (hoursNeeded[p] % minimumWorkload)));
             }
         }
-
-        // Properties for the instance selection
-        this.setProperty("numParts", numParts);
-        this.setProperty("numMachines", numMachines);
-        this.setProperty("numPeriods", numPeriods);
-        this.setProperty("maximumShortage", maximumShortage);
-        this.setProperty("avgProductionRate", ArrayUtil.sum(ArrayUtil.flatten(productionRate)) / (numParts * numMachines));
-        this.setProperty("avgInventory", ArrayUtil.sum(ArrayUtil.flatten(inventory)) / (numParts * numPeriods));
-
     }
 
     private static double getMinimumRate(int numMachines, int[][] productionRate, int part) {
@@ -108,13 +154,53 @@ public class CLSPInstance extends Instance {
     }
 
 
-    // Minimum workload is the maximum of the changeover time matrix
+    private int[][] obtainCapableMachines() {
+        int[][] machines = new int[numParts][];
+        for (int i = 0; i < numParts; i++) {
+            int count = 0;
+            for (int j = 0; j < numMachines; j++) {
+                if (productionRate[i][j] > 0) {
+                    count++;
+                }
+            }
+            machines[i] = new int[count];
+            count = 0;
+            for (int j = 0; j < numMachines; j++) {
+                if (productionRate[i][j] > 0) {
+                    machines[i][count++] = j;
+                }
+            }
+        }
+        return machines;
+    }
+
+    private int[][] obtainProducibleParts() {
+        int[] count = new int[numMachines];
+        for (int[] machines : capableMachines) {
+            for (int machine : machines) {
+                count[machine]++;
+            }
+        }
+        int[][] parts = new int[numMachines][];
+        for (int j = 0; j < numMachines; j++) {
+            parts[j] = new int[count[j]];
+            count[j] = 0;
+        }
+        for (int i = 0; i < numParts; i++) {
+            for (int machine : capableMachines[i]) {
+                parts[machine][count[machine]++] = i;
+            }
+        }
+        return parts;
+    }
+
+    // Minimum workload is the maximum of the changeover time matrix of the file, including the removed parts
     private int obtainMinimumWorkload() {
         var max = 0;
-        for (int i = 0; i < numParts; i++) {
-            for (int j = 0; j < numParts; j++) {
-                if (changeoverTime[i][j] > max) {
-                    max = changeoverTime[i][j];
+        for (int i = 0; i < fileData.numParts(); i++) {
+            for (int j = 0; j < fileData.numParts(); j++) {
+                if (fileData.changeoverTime()[i][j] > max) {
+                    max = fileData.changeoverTime()[i][j];
                 }
             }
         }
@@ -123,16 +209,47 @@ public class CLSPInstance extends Instance {
 
     private int obtainMaximumShortage() {
         var sum = 0;
-        for (int i = 0; i < numParts; i++) {
-            sum += inventory[i][numPeriods-1];
+        for (int i = 0; i < fileData.numParts(); i++) {
+            sum += fileData.inventory()[i][numPeriods-1];
         }
         return sum;
     }
 
+    /**
+     * Parts that can be short in some period, in increasing order. Production never decreases the inventory, so a part
+     * whose inventory is not negative in any period never adds shortage. It gets no work slots and placing it in a
+     * machine only adds changeover time, so it is removed from the instance and the rest of the parts are renumbered.
+     *
+     * @param inventory Inventory of each part and period, as read from the file
+     * @return identifiers in the file of the parts kept in the instance
+     */
+    private static int[] obtainActiveParts(int[][] inventory) {
+        int count = 0;
+        int[] parts = new int[inventory.length];
+        for (int i = 0; i < inventory.length; i++) {
+            for (int level : inventory[i]) {
+                if (level < 0) {
+                    parts[count++] = i;
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(parts, count);
+    }
+
+    private static int[][] copy(int[][] matrix, int rows, int columns) {
+        int[][] copy = new int[rows][columns];
+        for (int i = 0; i < rows; i++) {
+            System.arraycopy(matrix[i], 0, copy[i], 0, columns);
+        }
+        return copy;
+    }
+
     @Override
     public String toString() {
         return "CLSPInstance{" +
                 "\nnumParts=" + numParts +
+                "\npartIds=" + Arrays.toString(partIds) +
                 "\nnumMachines=" + numMachines +
                 "\nnumPeriods=" + numPeriods +
                 "\nproductionRate=" + Arrays.deepToString(productionRate) +
@@ -158,6 +275,68 @@ public class CLSPInstance extends Instance {
         return numParts;
     }
 
+    /**
+     * Number of parts of the instance file, including the parts that can never be short
+     */
+    public int getNumFileParts() {
+        return fileData.numParts();
+    }
+
+    /**
+     * Identifier of a part in the instance file
+     *
+     * @param partId Part
+     * @return identifier of the part in the file
+     */
+    public int getFilePartId(int partId) {
+        return partIds[partId];
+    }
+
+    /**
+     * Part with the given identifier in the instance file, the inverse of getFilePartId
+     *
+     * @param filePartId Identifier of the part in the file
+     * @return part, or -1 if the part was removed from the instance because it can never be short
+     */
+    public int getPartId(int filePartId) {
+        // Active parts are sorted by their identifier in the file
+        int partId = Arrays.binarySearch(partIds, filePartId);
+        return (partId >= 0) ? partId : -1;
+    }
+
+    /**
+     * Expands values by part to all the parts of the instance file, with 0 for the parts removed from the instance
+     *
+     * @param values Values of each part of the instance
+     * @return values of each part of the file
+     */
+    public int[] toFileParts(int[] values) {
+        int[] fileValues = new int[fileData.numParts()];
+        for (int i = 0; i < numParts; i++) {
+            fileValues[partIds[i]] = values[i];
+        }
+        return fileValues;
+    }
+
+    /**
+     * Expands inventory levels by part to all the parts of the instance file. Removed parts are never produced, so
+     * their inventory level is the one of the file.
+     *
+     * @param levels Inventory level of each part of the instance in the period
+     * @param period Period
+     * @return inventory level of each part of the file in the period
+     */
+    public int[] toFileInventoryLevels(int[] levels, int period) {
+        int[] fileLevels = new int[fileData.numParts()];
+        for (int i = 0; i < fileData.numParts(); i++) {
+            fileLevels[i] = fileData.inventory()[i][period];
+        }
+        for (int i = 0; i < numParts; i++) {
+            fileLevels[partIds[i]] = levels[i];
+        }
+        return fileLevels;
+    }
+
     public int getMachineCapacity(int machineId, int period) {
         // If period is out of bounds, return last period
         if (period >= numPeriods) {
@@ -190,6 +369,66 @@ public class CLSPInstance extends Instance {
         return new ArrayList<>(slotsNoShortage);
     }
 
+    /**
+     * Number of work slots returned by getCopyOfSlotsNoShortage, without copying them
+     */
+    public int getNumSlotsNoShortage() {
+        return slotsNoShortage.size();
+    }
+
+    /**
+     * Machines able to produce a part, in increasing order. The returned array MUST NOT be modified.
+     *
+     * @param partId Part
+     * @return identifiers of the machines with a production rate greater than zero for the part
+     */
+    public int[] getCapableMachines(int partId) {
+        return capableMachines[partId];
+    }
+
+    /**
+     * Parts that a machine is able to produce, in increasing order. The weekly production of a machine is always zero
+     * for the rest of the parts. The returned array MUST NOT be modified.
+     *
+     * @param machineId Machine
+     * @return identifiers of the parts with a production rate greater than zero in the machine
+     */
+    public int[] getProducibleParts(int machineId) {
+        return producibleParts[machineId];
+    }
+
+    DerivedData getDerivedData() {
+        return new DerivedData(maximumShortage, minimumWorkload, maximumWorkSlots, slotsMinimumWorkload, slotsNoShortage);
+    }
+
+    FileData getFileData() {
+        return fileData;
+    }
+
+    int[][] getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Cache of the weekly production of the machine sequences, created the first time it is requested, so the
+     * instances that are loaded but not solved do not keep one
+     *
+     * @return production profile cache of the instance
+     */
+    public ProductionProfileCache getProductionProfileCache() {
+        ProductionProfileCache cache = productionProfileCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = productionProfileCache;
+                if (cache == null) {
+                    cache = new ProductionProfileCache(this);
+                    productionProfileCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
     public double getPriority(int partId, int machineId) {
         return priority[partId][machineId];
     }
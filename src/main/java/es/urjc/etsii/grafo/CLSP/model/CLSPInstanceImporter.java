@@ -1,22 +1,62 @@
 package es.urjc.etsii.grafo.CLSP.model;
 
 import es.urjc.etsii.grafo.io.InstanceImporter;
+import org.springframework.beans.factory.annotation.Autowired;
 
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.Scanner;
+import java.io.Reader;
+import java.nio.file.Path;
 
 public class CLSPInstanceImporter extends InstanceImporter<CLSPInstance> {
 
+    // Binary cache of the parsed instances, null if it is disabled
+    private final InstanceBinaryCache cache;
+
+    /**
+     * Importer without binary cache
+     */
+    public CLSPInstanceImporter() {
+        this.cache = null;
+    }
+
+    /**
+     * Importer that uses the binary cache of parsed instances if custom.instance-cache-dir is set
+     *
+     * @param config Problem configuration
+     */
+    @Autowired
+    public CLSPInstanceImporter(CLSPConfig config) {
+        String cacheDir = config.getInstanceCacheDir();
+        this.cache = (cacheDir == null || cacheDir.isBlank()) ? null : new InstanceBinaryCache(Path.of(cacheDir));
+    }
+
     @Override
     public CLSPInstance importInstance(BufferedReader reader, String filename) throws IOException {
+        var entry = (cache == null) ? null : cache.entry(filename);
+        if (entry != null) {
+            var instance = cache.load(entry, filename);
+            if (instance != null) {
+                return instance;
+            }
+        }
+
+        var instance = parseInstance(reader, filename);
+        if (entry != null) {
+            cache.store(entry, instance);
+        }
+        return instance;
+    }
+
+    private CLSPInstance parseInstance(BufferedReader reader, String filename) throws IOException {
         // Create and return instance object from file data
 
+        var sc = new IntTokenizer(reader, filename);
+
         // Skip all the comments of the file, which must exist only at the beginning
-        while (reader.readLine().startsWith("#"));
+        sc.skipHeader();
 
-        Scanner sc = new Scanner(reader);
         var numParts = sc.nextInt();
         var numMachines = sc.nextInt();
         var numPeriods = sc.nextInt();
@@ -62,6 +102,143 @@ public class CLSPInstanceImporter extends InstanceImporter<CLSPInstance> {
         return new CLSPInstance(filename,numParts,numMachines,numPeriods,productionRate,changeoverTime,inventory,capacity,priority);
     }
 
+    /**
+     * Reads the integers of an instance file, separated by whitespace. Characters are read in blocks into its own
+     * buffer and numbers are parsed digit by digit, so no object is created per number. The line and column of the
+     * current character are kept to report malformed input.
+     */
+    static final class IntTokenizer {
+        private final Reader reader;
+        private final String filename;
+        private final char[] buffer = new char[1 << 16];
+        private int pos = 0;
+        private int limit = 0;
+        // Position of the next character in the file, starting at 1
+        private int line = 1;
+        private int column = 1;
+        private boolean afterCarriageReturn = false;
+
+        IntTokenizer(Reader reader, String filename) {
+            this.reader = reader;
+            this.filename = filename;
+        }
+
+        /**
+         * Skips the lines starting with '#' and the line after them, which must be blank
+         */
+        void skipHeader() throws IOException {
+            boolean comment;
+            do {
+                comment = peek() == '#';
+                skipLine();
+            } while (comment);
+        }
+
+        /**
+         * Reads the next integer
+         *
+         * @return integer read
+         * @throws IOException if the file cannot be read, the next token is not an integer or there are no more tokens
+         */
+        int nextInt() throws IOException {
+            int c = peek();
+            while (c != -1 && Character.isWhitespace(c)) {
+                advance();
+                c = peek();
+            }
+            if (c == -1) {
+                throw new IOException(String.format("Unexpected end of file in %s at line %d, column %d: an integer was expected", filename, line, column));
+            }
+
+            // Only the sign and the start of the token are kept, its text is only built to report an error
+            int tokenLine = line;
+            int tokenColumn = column;
+            int sign = 0;
+            if (c == '-' || c == '+') {
+                sign = c;
+                advance();
+                c = peek();
+            }
+            long value = 0;
+            int digits = 0;
+            while (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                digits++;
+                advance();
+                if (value > (long) Integer.MAX_VALUE + 1) {
+                    throw malformed(sign, value, digits, tokenLine, tokenColumn);
+                }
+                c = peek();
+            }
+            if (digits == 0 || (c != -1 && !Character.isWhitespace(c)) || (sign != '-' && value > Integer.MAX_VALUE)) {
+                throw malformed(sign, value, digits, tokenLine, tokenColumn);
+            }
+            return (int) (sign == '-' ? -value : value);
+        }
+
+        /**
+         * Builds the error of a token that is not an integer. The digits already read are rebuilt from their value,
+         * with the leading zeros, and the rest of the token is read from the file.
+         */
+        private IOException malformed(int sign, long value, int digits, int tokenLine, int tokenColumn) throws IOException {
+            StringBuilder token = new StringBuilder();
+            if (sign != 0) {
+                token.append((char) sign);
+            }
+            if (digits > 0) {
+                String valueDigits = Long.toString(value);
+                token.append("0".repeat(digits - valueDigits.length())).append(valueDigits);
+            }
+            int c = peek();
+            while (c != -1 && !Character.isWhitespace(c)) {
+                token.append((char) c);
+                advance();
+                c = peek();
+            }
+            return new IOException(String.format("Malformed instance file %s at line %d, column %d: \"%s\" is not an integer", filename, tokenLine, tokenColumn, token));
+        }
+
+        /**
+         * Skips the rest of the current line, including its terminator ("\n", "\r" or "\r\n")
+         */
+        private void skipLine() throws IOException {
+            int c = peek();
+            while (c != -1 && c != '\n' && c != '\r') {
+                advance();
+                c = peek();
+            }
+            if (c == '\r') {
+                advance();
+                c = peek();
+            }
+            if (c == '\n') {
+                advance();
+            }
+        }
+
+        private int peek() throws IOException {
+            if (pos == limit) {
+                limit = Math.max(0, reader.read(buffer, 0, buffer.length));
+                pos = 0;
+                if (limit == 0) {
+                    return -1;
+                }
+            }
+            return buffer[pos];
+        }
+
+        private void advance() {
+            char c = buffer[pos++];
+            if (c == '\r' || (c == '\n' && !afterCarriageReturn)) {
+                line++;
+                column = 1;
+            } else if (c != '\n') {
+                column++;
+            }
+            afterCarriageReturn = c == '\r';
+        }
+    }
+
     // Create main function to test the class methods
     public static CLSPInstance checkInstance(String filename)  {
         CLSPInstance instance = null;
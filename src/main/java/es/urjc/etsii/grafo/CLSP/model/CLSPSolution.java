@@ -14,14 +14,35 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
     //private static final Logger log = LoggerFactory.getLogger(CLSPSolution.class);
 
     // For each machine, we store the work slots sequentially.
-    private WorkSlot[][] solutionData;
-
-    // Current number of work slots for each machine
-    private int [] numberOfMachineWorkSlots;
+    private MachineSchedule[] schedules;
 
     // For each machine, period and part, we store the number of produced parts.
     private int [][][] machineWeeklyProducedParts;
 
+    // Weekly produced parts of all the machines, by period and part, and the total shortage of this production. They
+    // are updated by the moves and rebuilt by accumulateWeeklyProductionAndCalculatesScore after constructive steps.
+    private int [][] weeklyProducedParts;
+    private int weeklyProducedPartsShortage;
+    private boolean ownsWeeklyProducedParts;
+
+    // Copy-on-write flags. A clone shares the schedule and the weekly production of each machine with the original
+    // solution, and the row is only duplicated the first time it is written by any of them.
+    private boolean[] ownsSchedule;
+    private boolean[] ownsWeeklyProduction;
+
+    // Don't look bits of the insert neighborhood, by part. A part is skipped as initial work slot of the moves while
+    // its bit is set, and the bit is reset when the timing of any of its work slots, or of a work slot of the same
+    // machine within DONT_LOOK_PERIOD_WINDOW periods before it, changes.
+    private boolean[] dontLookParts;
+    public static final int DONT_LOOK_PERIOD_WINDOW = 1;
+
+    // Undo journal (see beginJournal). It is kept between uses to reuse its arrays, and it is not shared with clones.
+    private Journal journal;
+    private boolean journalActive;
+
+    // Solutions already improved in this run, shared with clones
+    private VisitedSolutions visitedSolutions;
+
     private double score;
 
     private List<WorkSlot> unassignedWorkSlots;
@@ -57,18 +78,93 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
 
 // Getters. Some of them to automatically export solution data to JSON
 
+    /**
+     * Builds a WorkSlot copy of every assigned work slot. Only intended for exporting the solution, algorithms
+     * should access the schedules instead.
+     *
+     * @return work slots of each machine
+     */
     public WorkSlot[][] getSolutionData() {
+        WorkSlot[][] solutionData = new WorkSlot[this.schedules.length][];
+        for (int i = 0; i < this.schedules.length; i++) {
+            solutionData[i] = new WorkSlot[this.schedules[i].size()];
+            for (int j = 0; j < solutionData[i].length; j++) {
+                solutionData[i][j] = this.schedules[i].toWorkSlot(j);
+            }
+        }
         return solutionData;
     }
 
-    public int[] getNumberOfMachineWorkSlots() {
-        return numberOfMachineWorkSlots;
+    /**
+     * Work slots of the given machine. The schedule may be shared with other solutions, so it MUST NOT be modified,
+     * use getWritableSchedule instead.
+     *
+     * @param machineId Id of the machine
+     * @return read-only schedule of the machine
+     */
+    public MachineSchedule getSchedule(int machineId) {
+        return schedules[machineId];
     }
 
+    /**
+     * Work slots of the given machine, duplicated first if they are shared with another solution.
+     *
+     * @param machineId Id of the machine
+     * @return schedule of the machine owned by this solution
+     */
+    public MachineSchedule getWritableSchedule(int machineId) {
+        journalMachine(machineId);
+        if (!ownsSchedule[machineId]) {
+            schedules[machineId] = new MachineSchedule(schedules[machineId]);
+            ownsSchedule[machineId] = true;
+        }
+        return schedules[machineId];
+    }
+
+    public int getNumberOfMachineWorkSlots(int machineId) {
+        return schedules[machineId].size();
+    }
+
+    /**
+     * Weekly produced parts by machine, period and part. Machine rows may be shared with other solutions, so they
+     * MUST NOT be modified, use getWritableMachineWeeklyProducedParts instead.
+     *
+     * @return read-only weekly produced parts
+     */
     public int[][][] getMachineWeeklyProducedParts() {
         return machineWeeklyProducedParts;
     }
 
+    /**
+     * Weekly produced parts of all the machines by period and part. They may be shared with other solutions, so they
+     * MUST NOT be modified.
+     *
+     * @return read-only weekly produced parts of all the machines
+     */
+    public int[][] getWeeklyProducedParts() {
+        return weeklyProducedParts;
+    }
+
+    /**
+     * Weekly produced parts of the given machine, duplicated first if they are shared with another solution.
+     *
+     * @param machineId Id of the machine
+     * @return weekly produced parts (period, part) of the machine owned by this solution
+     */
+    public int[][] getWritableMachineWeeklyProducedParts(int machineId) {
+        journalMachine(machineId);
+        if (!ownsWeeklyProduction[machineId]) {
+            int[][] shared = machineWeeklyProducedParts[machineId];
+            int[][] copy = new int[shared.length][];
+            for (int period = 0; period < shared.length; period++) {
+                copy[period] = shared[period].clone();
+            }
+            machineWeeklyProducedParts[machineId] = copy;
+            ownsWeeklyProduction[machineId] = true;
+        }
+        return machineWeeklyProducedParts[machineId];
+    }
+
 
     public List<WorkSlot> getUnassignedWorkSlots() {
         return unassignedWorkSlots;
@@ -89,52 +185,58 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
      */
     public CLSPSolution(CLSPInstance ins) {
         super(ins);
-        solutionData = new WorkSlot[ins.getNumMachines()][ins.maximumWorkSlots()];
-        numberOfMachineWorkSlots = new int[ins.getNumMachines()];
+        unassignedWorkSlots = ins.getCopyOfSlotsNoShortage();
+        schedules = new MachineSchedule[ins.getNumMachines()];
         for (int i = 0; i < ins.getNumMachines(); i++) {
-            numberOfMachineWorkSlots[i] = 0;
+            schedules[i] = new MachineSchedule(unassignedWorkSlots.size() / ins.getNumMachines() + 1);
         }
         machineWeeklyProducedParts = new int[this.getInstance().getNumMachines()][this.getInstance().getNumPeriods()][this.getInstance().getNumParts()];
+        ownsSchedule = new boolean[ins.getNumMachines()];
+        ownsWeeklyProduction = new boolean[ins.getNumMachines()];
+        Arrays.fill(ownsSchedule, true);
+        Arrays.fill(ownsWeeklyProduction, true);
+        weeklyProducedParts = new int[this.getInstance().getNumPeriods()][this.getInstance().getNumParts()];
+        weeklyProducedPartsShortage = 0;
+        ownsWeeklyProducedParts = true;
+        dontLookParts = new boolean[this.getInstance().getNumParts()];
         score = Double.MAX_VALUE;
-        unassignedWorkSlots = ins.getCopyOfSlotsNoShortage();
         changeoverTime = 0;
         shortage = Double.MAX_VALUE;
         shortageGurobi = Double.MAX_VALUE;
         priorityGurobi = Double.MAX_VALUE;
+        visitedSolutions = new VisitedSolutions();
     }
 
     /**
-     * Clone constructor
+     * Clone constructor. Machine rows are shared with the given solution (copy-on-write), so both solutions lose
+     * the ownership of them and duplicate a row only when they write it.
      *
      * @param s Solution to clone
      */
     public CLSPSolution(CLSPSolution s) {
         super(s);
-        solutionData = new WorkSlot[this.getInstance().getNumMachines()][this.getInstance().maximumWorkSlots()];
-        for (int i = 0; i < this.getInstance().getNumMachines(); i++) {
-            for (int j = 0; j < s.numberOfMachineWorkSlots[i]; j++) {
-                solutionData[i][j] = new WorkSlot(s.solutionData[i][j]);
-            }
-        }
-        numberOfMachineWorkSlots = new int[this.getInstance().getNumMachines()];
-        if (this.getInstance().getNumMachines() >= 0)
-            System.arraycopy(s.numberOfMachineWorkSlots, 0, numberOfMachineWorkSlots, 0, this.getInstance().getNumMachines());
-        machineWeeklyProducedParts = new int[this.getInstance().getNumMachines()][this.getInstance().getNumPeriods()][this.getInstance().getNumParts()];
-        for (int i = 0; i < this.getInstance().getNumMachines(); i++) {
-            for (int j = 0; j < this.getInstance().getNumPeriods(); j++) {
-                if (this.getInstance().getNumParts() >= 0)
-                    System.arraycopy(s.machineWeeklyProducedParts[i][j], 0, machineWeeklyProducedParts[i][j], 0, this.getInstance().getNumParts());
-            }
+        schedules = s.schedules.clone();
+        machineWeeklyProducedParts = s.machineWeeklyProducedParts.clone();
+        ownsSchedule = new boolean[this.getInstance().getNumMachines()];
+        ownsWeeklyProduction = new boolean[this.getInstance().getNumMachines()];
+        Arrays.fill(s.ownsSchedule, false);
+        Arrays.fill(s.ownsWeeklyProduction, false);
+        weeklyProducedParts = s.weeklyProducedParts;
+        weeklyProducedPartsShortage = s.weeklyProducedPartsShortage;
+        ownsWeeklyProducedParts = false;
+        s.ownsWeeklyProducedParts = false;
+        if (s.journalActive) {
+            s.journal.markShared();
         }
+        dontLookParts = s.dontLookParts.clone();
         score = s.score;
-        unassignedWorkSlots = new ArrayList<>();
-        for (WorkSlot ws : s.unassignedWorkSlots) {
-            unassignedWorkSlots.add(new WorkSlot(ws));
-        }
+        // Unassigned work slots are never modified, they are copied before being added to a machine
+        unassignedWorkSlots = new ArrayList<>(s.unassignedWorkSlots);
         changeoverTime = s.changeoverTime;
         shortage = s.shortage;
         shortageGurobi = s.shortageGurobi;
         priorityGurobi = s.priorityGurobi;
+        visitedSolutions = s.visitedSolutions;
     }
 
 
@@ -183,12 +285,18 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
     @Override
     public double recalculateScore() {
 
-        int [] totalProducedParts = new int[this.getInstance().getNumParts()];
-        int [] lastInventory = new int[this.getInstance().getNumParts()];
-        int [] difference = new int[this.getInstance().getNumParts()];
-        int [][] weeklyProducedParts = new int[this.getInstance().getNumPeriods()][this.getInstance().getNumParts()];
+        // Every machine is simulated from scratch, the production profile cache is only used by the incremental
+        // evaluation, so a wrong cached profile is detected here
+        int [][][] newMachineWeeklyProducedParts = new int[this.getInstance().getNumMachines()][][];
+        double totalChangeOverTime = 0;
+        for (int machineId=0; machineId<this.getInstance().getNumMachines(); machineId++) {
+            newMachineWeeklyProducedParts[machineId] = new int[this.getInstance().getNumPeriods()][this.getInstance().getNumParts()];
+            calculateMachineWeeklyProducedParts(this.getInstance(), newMachineWeeklyProducedParts[machineId], this.schedules[machineId], this.schedules[machineId].size(), machineId);
+            totalChangeOverTime += machineChangeoverTime(this.getInstance(), this.schedules[machineId]);
+        }
 
-        return scoreCalculation(fullChangeOverTimeCalculation(),fullShortageCalculation(totalProducedParts, lastInventory, difference,weeklyProducedParts));
+        int [] weeklyShortage = fullCalculateWeeklyShortage(newMachineWeeklyProducedParts, new int[this.getInstance().getNumPeriods()][this.getInstance().getNumParts()]);
+        return scoreCalculation(totalChangeOverTime, calculateShortageFunction(weeklyShortage));
 
     }
 
@@ -208,66 +316,189 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
      * @param instance Current instance
      * @param machineWeeklyProducedParts Matrix to store the weekly produced parts (period, part)
      * @param workslotSequence Workslot sequence
+     * @param numWorkSlots Number of work slots of the sequence to consider
      * @param machineId Machine to calculate the weekly produced parts
      */
-    public static void calculateMachineWeeklyProducedParts(CLSPInstance instance, int[][] machineWeeklyProducedParts, WorkSlot[] workslotSequence, int numWorkSlots, int machineId) {
-        int period = 0;
-        double currentPeriodDuration = 0;
-        int machineCapacity = instance.getMachineCapacity(machineId,period);
-        for (int j=0; j < numWorkSlots; j++) {
-            // If there is a change of period, we account for it
-            if ((currentPeriodDuration + workslotSequence[j].getDuration()) >= machineCapacity) {
-                double hoursToComplete = machineCapacity - currentPeriodDuration;
-                machineWeeklyProducedParts[period][workslotSequence[j].getPartId()] += (int) Math.ceil(hoursToComplete * instance.productionRate[workslotSequence[j].getPartId()][machineId]);
-                currentPeriodDuration = currentPeriodDuration + workslotSequence[j].getDuration() - machineCapacity;
-                period++;
-                // If the sequence of work slots is longer than the number of periods, we skip the rest of the work slots
-                if (period >= instance.getNumPeriods()) {
-                    break;
-                }
-                machineCapacity = instance.getMachineCapacity(machineId, period);
-                while (currentPeriodDuration >= machineCapacity) {
-                    machineWeeklyProducedParts[period][workslotSequence[j].getPartId()] += (machineCapacity * instance.productionRate[workslotSequence[j].getPartId()][machineId]);
-                    currentPeriodDuration -= machineCapacity;
-                    period++;
-                    if (period >= instance.getNumPeriods()) {
-                        break;
-                    }
-                    machineCapacity = instance.getMachineCapacity(machineId, period);
-                }
-                if (period >= instance.getNumPeriods()) {
-                    break;
-                }
-                machineWeeklyProducedParts[period][workslotSequence[j].getPartId()] += (int) Math.ceil(currentPeriodDuration * instance.productionRate[workslotSequence[j].getPartId()][machineId]);
-                machineCapacity = instance.getMachineCapacity(machineId, period);
-            } else {
-                currentPeriodDuration += workslotSequence[j].getDuration();
-                machineWeeklyProducedParts[period][workslotSequence[j].getPartId()] += (int) Math.ceil(workslotSequence[j].getDuration() * instance.productionRate[workslotSequence[j].getPartId()][machineId]);
-            }
-            // If a changeover is needed, we account for it
-            if ((j < (numWorkSlots - 1)) &&
-                    (workslotSequence[j].getPartId() != workslotSequence[j + 1].getPartId())) {
-                int changeoverTime = instance.changeoverTime[workslotSequence[j].getPartId()][workslotSequence[j + 1].getPartId()];
-                currentPeriodDuration += changeoverTime;
-                // If changeover time reaches the end of the period, account for it in total time, and reset period
-                if (currentPeriodDuration >= machineCapacity) {
-                    currentPeriodDuration -= machineCapacity;
-                    period++;
-                    // If the sequence of work slots is longer than the number of periods, we skip the rest of the work slots
-                    if (period >= instance.getNumPeriods()) {
-                        break;
-                    }
-                }
+    public static void calculateMachineWeeklyProducedParts(CLSPInstance instance, int[][] machineWeeklyProducedParts, MachineSchedule workslotSequence, int numWorkSlots, int machineId) {
+        var state = new SimulationState(instance, machineId);
+        // If the sequence of work slots is longer than the number of periods, we skip the rest of the work slots
+        for (int j = 0; (j < numWorkSlots) && (state.period < instance.getNumPeriods()); j++) {
+            simulateWorkSlot(instance, machineWeeklyProducedParts, 1, workslotSequence, j, numWorkSlots, machineId, state);
+        }
+
+        accumulateMachineWeeklyProducedParts(instance, machineWeeklyProducedParts);
+    }
+
+    /**
+     * Calculates the machine's weekly produced parts of a modified copy of the schedule of the machine, resuming the
+     * simulation from the checkpoints of the schedule instead of starting from the first work slot. The new sequence
+     * must be equal to the schedule before position firstChanged, and equal to the schedule displaced "shift"
+     * positions from position tailStart on (newSequence[i] == schedule[i + shift] for i >= tailStart). When the
+     * simulation of the new sequence reaches the tail with the same state as the schedule, the rest of the production
+     * is the same and the simulation stops.
+     * The result is exactly the same as calculating it from scratch with the new sequence.
+     *
+     * @param instance Current instance
+     * @param machineWeeklyProducedParts Matrix to store the weekly produced parts (period, part). Previous content is
+     *                                   overwritten
+     * @param schedule Current schedule of the machine in the solution
+     * @param newSequence Modified copy of the schedule
+     * @param firstChanged First position of the new sequence different from the schedule
+     * @param tailStart First position of the new sequence of the unchanged tail
+     * @param shift Displacement of the tail between the new sequence and the schedule
+     * @param machineId Machine to calculate the weekly produced parts
+     */
+    public static void calculateMachineWeeklyProducedParts(CLSPInstance instance, int[][] machineWeeklyProducedParts, MachineSchedule schedule, MachineSchedule newSequence, int firstChanged, int tailStart, int shift, int machineId) {
+        // Only the sequences of executed moves are cached (see updateDataStructuresOptimized), most of the evaluated ones
+        // are never visited again
+        if (instance.getProductionProfileCache().loadProduction(machineId, newSequence, machineWeeklyProducedParts)) {
+            return;
+        }
+        schedule.ensureCheckpoints(instance, machineId);
+        int[][] increments = schedule.getSimulatedIncrements();
+        for (int period = 0; period < instance.getNumPeriods(); period++) {
+            System.arraycopy(increments[period], 0, machineWeeklyProducedParts[period], 0, instance.getNumParts());
+        }
+
+        // The work slot before the first change is simulated again, since its changeover time may change
+        int start = Math.max(0, firstChanged - 1);
+        int numWorkSlots = schedule.size();
+        int newNumWorkSlots = newSequence.size();
+
+        // Add the production of the new sequence from the checkpoint
+        var state = new SimulationState(instance, machineId);
+        schedule.loadCheckpoint(start, state);
+        int end = numWorkSlots;
+        for (int i = start; (i < newNumWorkSlots) && (state.period < instance.getNumPeriods()); i++) {
+            if ((i >= tailStart) && schedule.isCheckpoint(i + shift, state)) {
+                // Same state and same remaining work slots: the rest of the production does not change
+                end = i + shift;
+                break;
+            }
+            simulateWorkSlot(instance, machineWeeklyProducedParts, 1, newSequence, i, newNumWorkSlots, machineId, state);
+        }
+
+        // Remove the production of the replaced work slots of the schedule
+        for (int j = start; j < end; j++) {
+            schedule.loadCheckpoint(j, state);
+            if (state.period >= instance.getNumPeriods()) {
+                break;
             }
+            simulateWorkSlot(instance, machineWeeklyProducedParts, -1, schedule, j, numWorkSlots, machineId, state);
         }
 
-        // Accumulates the obtained values (begins in the second period)
+        accumulateMachineWeeklyProducedParts(instance, machineWeeklyProducedParts);
+    }
+
+    /**
+     * Accumulates the weekly produced parts of a machine (begins in the second period)
+     */
+    private static void accumulateMachineWeeklyProducedParts(CLSPInstance instance, int[][] machineWeeklyProducedParts) {
         for (int p = 1; p < instance.getNumPeriods(); p++) {
             for (int part = 0; part < instance.getNumParts(); part++) {
                 machineWeeklyProducedParts[p][part] += machineWeeklyProducedParts[p-1][part];
             }
         }
+    }
 
+    /**
+     * State of the simulation of a machine before processing a work slot.
+     */
+    static final class SimulationState {
+        // Current period
+        int period;
+        // Time already used in the current period
+        double offset;
+        // Capacity considered for the current period
+        int capacity;
+
+        SimulationState(CLSPInstance instance, int machineId) {
+            this.period = 0;
+            this.offset = 0;
+            this.capacity = instance.getMachineCapacity(machineId, 0);
+        }
+    }
+
+    /**
+     * Simulates work slot j of the sequence and its changeover with the next one, updating the state and adding its
+     * production (not accumulated) to the given matrix. The state period must be lower than the number of periods;
+     * when it reaches it, the rest of the work slots are out of the horizon.
+     * @param instance Current instance
+     * @param production Matrix to update with the production of the work slot (period, part)
+     * @param sign 1 to add the production, -1 to remove it
+     * @param workslotSequence Workslot sequence
+     * @param j Position of the work slot
+     * @param numWorkSlots Number of work slots of the sequence to consider
+     * @param machineId Machine of the sequence
+     * @param state State of the machine before the work slot, updated by the method
+     */
+    static void simulateWorkSlot(CLSPInstance instance, int[][] production, int sign, MachineSchedule workslotSequence, int j, int numWorkSlots, int machineId, SimulationState state) {
+        int part = workslotSequence.getPartId(j);
+        simulateProduction(instance, production, sign, part, workslotSequence.getDuration(j), machineId, state);
+        if (state.period >= instance.getNumPeriods()) {
+            return;
+        }
+        // If a changeover is needed, we account for it
+        if ((j < (numWorkSlots - 1)) && (part != workslotSequence.getPartId(j + 1))) {
+            simulateChangeover(instance, part, workslotSequence.getPartId(j + 1), state);
+        }
+    }
+
+    /**
+     * Simulates the production of a work slot, without the changeover with the next one, updating the state and
+     * adding its production (not accumulated) to the given matrix. The state period must be lower than the number
+     * of periods.
+     * @param instance Current instance
+     * @param production Matrix to update with the production of the work slot (period, part)
+     * @param sign 1 to add the production, -1 to remove it
+     * @param part Part produced by the work slot
+     * @param duration Duration of the work slot
+     * @param machineId Machine of the work slot
+     * @param state State of the machine before the work slot, updated by the method
+     */
+    static void simulateProduction(CLSPInstance instance, int[][] production, int sign, int part, double duration, int machineId, SimulationState state) {
+        int rate = instance.productionRate[part][machineId];
+        // If there is a change of period, we account for it
+        if ((state.offset + duration) >= state.capacity) {
+            double hoursToComplete = state.capacity - state.offset;
+            production[state.period][part] += sign * (int) Math.ceil(hoursToComplete * rate);
+            state.offset = state.offset + duration - state.capacity;
+            state.period++;
+            if (state.period >= instance.getNumPeriods()) {
+                return;
+            }
+            state.capacity = instance.getMachineCapacity(machineId, state.period);
+            while (state.offset >= state.capacity) {
+                production[state.period][part] += sign * state.capacity * rate;
+                state.offset -= state.capacity;
+                state.period++;
+                if (state.period >= instance.getNumPeriods()) {
+                    return;
+                }
+                state.capacity = instance.getMachineCapacity(machineId, state.period);
+            }
+            production[state.period][part] += sign * (int) Math.ceil(state.offset * rate);
+        } else {
+            state.offset += duration;
+            production[state.period][part] += sign * (int) Math.ceil(duration * rate);
+        }
+    }
+
+    /**
+     * Simulates the changeover between two different parts, updating the state.
+     * @param instance Current instance
+     * @param part Part of the work slot before the changeover
+     * @param nextPart Part of the work slot after the changeover
+     * @param state State of the machine after producing the work slot, updated by the method
+     */
+    static void simulateChangeover(CLSPInstance instance, int part, int nextPart, SimulationState state) {
+        state.offset += instance.changeoverTime[part][nextPart];
+        // If changeover time reaches the end of the period, account for it in total time, and reset period.
+        // The capacity of the period is not updated here.
+        if (state.offset >= state.capacity) {
+            state.offset -= state.capacity;
+            state.period++;
+        }
     }
 
     /**
@@ -284,7 +515,7 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
         var newMachineWeeklyProducedParts = new int[this.getInstance().getNumMachines()][this.getInstance().getNumPeriods()][this.getInstance().getNumParts()];
 
         for (int machineId=0; machineId<this.getInstance().getNumMachines(); machineId++) {
-            calculateMachineWeeklyProducedParts(this.getInstance(), newMachineWeeklyProducedParts[machineId], this.solutionData[machineId], this.numberOfMachineWorkSlots[machineId], machineId);
+            calculateMachineWeeklyProducedParts(this.getInstance(), newMachineWeeklyProducedParts[machineId], this.schedules[machineId], this.schedules[machineId].size(), machineId);
         }
 
         for (int period = 0; period < this.getInstance().getNumPeriods(); period++) {
@@ -316,17 +547,28 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
         double totalChangeOverTime = 0;
 
         for (int machineId=0; machineId<this.getInstance().getNumMachines(); machineId++) {
-            for (int j=0; j<this.numberOfMachineWorkSlots[machineId]; j++) {
-                if ((j < (this.numberOfMachineWorkSlots[machineId] - 1)) &&
-                        (this.solutionData[machineId][j].getPartId() != this.solutionData[machineId][j + 1].getPartId())) {
-                    totalChangeOverTime += this.getInstance().changeoverTime[this.solutionData[machineId][j].getPartId()][this.solutionData[machineId][j + 1].getPartId()];
-                }
-            }
+            totalChangeOverTime += machineChangeoverTime(this.getInstance(), this.schedules[machineId]);
         }
 
         return totalChangeOverTime;
     }
 
+    /**
+     * Changeover time of a sequence of work slots
+     * @param instance Instance of the problem
+     * @param schedule Work slots of the machine
+     * @return sum of the changeover times between consecutive work slots of different parts
+     */
+    private static int machineChangeoverTime(CLSPInstance instance, MachineSchedule schedule) {
+        int changeoverTime = 0;
+        for (int j=0; j<schedule.size() - 1; j++) {
+            if (schedule.getPartId(j) != schedule.getPartId(j + 1)) {
+                changeoverTime += instance.changeoverTime[schedule.getPartId(j)][schedule.getPartId(j + 1)];
+            }
+        }
+        return changeoverTime;
+    }
+
 /*
     protected double fullMaxTotalTimeCalculation() {
         double totalTime = 0;
@@ -337,18 +579,18 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
             double currentPeriodDuration = 0;
             currentMachineTime = 0;
             int machineCapacity = this.getInstance().getMachineCapacity(machineId,period);
-            for (int j=0; j<this.numberOfMachineWorkSlots[machineId]; j++) {
-                currentMachineTime += this.solutionData[machineId][j].getDuration();
+            for (int j=0; j<this.schedules[machineId].size(); j++) {
+                currentMachineTime += this.schedules[machineId].getDuration(j);
                 // If there is a change of period, we account for it
-                if ((currentPeriodDuration + this.solutionData[machineId][j].getDuration()) >= machineCapacity) {
-                    currentPeriodDuration = currentPeriodDuration + this.solutionData[machineId][j].getDuration() - machineCapacity;
+                if ((currentPeriodDuration + this.schedules[machineId].getDuration(j)) >= machineCapacity) {
+                    currentPeriodDuration = currentPeriodDuration + this.schedules[machineId].getDuration(j) - machineCapacity;
                     period++;
                 } else {
-                    currentPeriodDuration += this.solutionData[machineId][j].getDuration();
+                    currentPeriodDuration += this.schedules[machineId].getDuration(j);
                 }
-                if ((j < (this.numberOfMachineWorkSlots[machineId] - 1)) &&
-                        (this.solutionData[machineId][j].getPartId() != this.solutionData[machineId][j + 1].getPartId())) {
-                    int changeoverTime = this.getInstance().getChangeoverTime(this.solutionData[machineId][j].getPartId(), this.solutionData[machineId][j + 1].getPartId());
+                if ((j < (this.schedules[machineId].size() - 1)) &&
+                        (this.schedules[machineId].getPartId(j) != this.schedules[machineId].getPartId(j + 1))) {
+                    int changeoverTime = this.getInstance().getChangeoverTime(this.schedules[machineId].getPartId(j), this.schedules[machineId].getPartId(j + 1));
                     currentMachineTime += changeoverTime;
                     currentPeriodDuration += changeoverTime;
                     // TODO: take into account the changeover time overlapping with the period change
@@ -386,33 +628,33 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
             }
             sb.append("Machine ").append(machineId).append(":\n");
             sb.append("\tWsId\tPartId\tDuration\tEnd\tWeek\tInventory\tLOG DURATION\n");
-            for (int j=0; j<this.numberOfMachineWorkSlots[machineId]; j++) {
-                if (this.getInstance().getPriority(this.solutionData[machineId][j].getPartId(), machineId) > 1)
-                    hoursNonPreferredMachine += this.solutionData[machineId][j].getDuration();
-                machineTime += this.solutionData[machineId][j].getDuration();
+            for (int j=0; j<this.schedules[machineId].size(); j++) {
+                if (this.getInstance().getPriority(this.schedules[machineId].getPartId(j), machineId) > 1)
+                    hoursNonPreferredMachine += this.schedules[machineId].getDuration(j);
+                machineTime += this.schedules[machineId].getDuration(j);
                 // If there is a change of period, we account for it
-                if ((currentPeriodDuration + this.solutionData[machineId][j].getDuration()) >= machineCapacity) {
+                if ((currentPeriodDuration + this.schedules[machineId].getDuration(j)) >= machineCapacity) {
                     double hoursToComplete = machineCapacity - currentPeriodDuration;
-                    machineProducedParts[this.solutionData[machineId][j].getPartId()] += (int) Math.ceil(hoursToComplete*this.getInstance().productionRate[this.solutionData[machineId][j].getPartId()][machineId]);
-                    sb.append("\t").append(j).append("\t").append(this.solutionData[machineId][j].getPartId()).append("\t").append(hoursToComplete).append("\t").append(machineTime - this.solutionData[machineId][j].getDuration() + hoursToComplete).append("\t").append(period + 1).append("\t").append(Arrays.toString(machineProducedParts)).append("\t").append(this.solutionData[machineId][j].getDuration()).append("\n");
-                    currentPeriodDuration = currentPeriodDuration + this.solutionData[machineId][j].getDuration() - machineCapacity;
-                    machineProducedParts[this.solutionData[machineId][j].getPartId()] += (int) Math.ceil(currentPeriodDuration*this.getInstance().productionRate[this.solutionData[machineId][j].getPartId()][machineId]);
+                    machineProducedParts[this.schedules[machineId].getPartId(j)] += (int) Math.ceil(hoursToComplete*this.getInstance().productionRate[this.schedules[machineId].getPartId(j)][machineId]);
+                    sb.append("\t").append(j).append("\t").append(this.getInstance().getFilePartId(this.schedules[machineId].getPartId(j))).append("\t").append(hoursToComplete).append("\t").append(machineTime - this.schedules[machineId].getDuration(j) + hoursToComplete).append("\t").append(period + 1).append("\t").append(Arrays.toString(this.getInstance().toFileParts(machineProducedParts))).append("\t").append(this.schedules[machineId].getDuration(j)).append("\n");
+                    currentPeriodDuration = currentPeriodDuration + this.schedules[machineId].getDuration(j) - machineCapacity;
+                    machineProducedParts[this.schedules[machineId].getPartId(j)] += (int) Math.ceil(currentPeriodDuration*this.getInstance().productionRate[this.schedules[machineId].getPartId(j)][machineId]);
                     period++;
                     machineCapacity = this.getInstance().getMachineCapacity(machineId,period);
-                    sb.append("\t").append(j).append("\t").append(this.solutionData[machineId][j].getPartId()).append("\t").append(currentPeriodDuration).append("\t").append(machineTime).append("\t").append(period + 1).append("\t").append(Arrays.toString(machineProducedParts)).append("\t").append(this.solutionData[machineId][j].getDuration()).append("\n");
+                    sb.append("\t").append(j).append("\t").append(this.getInstance().getFilePartId(this.schedules[machineId].getPartId(j))).append("\t").append(currentPeriodDuration).append("\t").append(machineTime).append("\t").append(period + 1).append("\t").append(Arrays.toString(this.getInstance().toFileParts(machineProducedParts))).append("\t").append(this.schedules[machineId].getDuration(j)).append("\n");
                 } else {
-                    currentPeriodDuration += this.solutionData[machineId][j].getDuration();
-                    machineProducedParts[this.solutionData[machineId][j].getPartId()] += (int) Math.ceil(this.solutionData[machineId][j].getDuration()*this.getInstance().productionRate[this.solutionData[machineId][j].getPartId()][machineId]);
-                    sb.append("\t").append(j).append("\t").append(this.solutionData[machineId][j].getPartId()).append("\t").append(this.solutionData[machineId][j].getDuration()).append("\t").append(machineTime).append("\t").append(period + 1).append("\t").append(Arrays.toString(machineProducedParts)).append("\t").append(this.solutionData[machineId][j].getDuration()).append("\n");
+                    currentPeriodDuration += this.schedules[machineId].getDuration(j);
+                    machineProducedParts[this.schedules[machineId].getPartId(j)] += (int) Math.ceil(this.schedules[machineId].getDuration(j)*this.getInstance().productionRate[this.schedules[machineId].getPartId(j)][machineId]);
+                    sb.append("\t").append(j).append("\t").append(this.getInstance().getFilePartId(this.schedules[machineId].getPartId(j))).append("\t").append(this.schedules[machineId].getDuration(j)).append("\t").append(machineTime).append("\t").append(period + 1).append("\t").append(Arrays.toString(this.getInstance().toFileParts(machineProducedParts))).append("\t").append(this.schedules[machineId].getDuration(j)).append("\n");
                 }
                 // If a changeover is needed, we account for it
-                if ((j < (this.numberOfMachineWorkSlots[machineId] - 1)) &&
-                        (this.solutionData[machineId][j].getPartId() != this.solutionData[machineId][j + 1].getPartId())) {
-                    int changeoverTime = this.getInstance().changeoverTime[this.solutionData[machineId][j].getPartId()][this.solutionData[machineId][j + 1].getPartId()];
+                if ((j < (this.schedules[machineId].size() - 1)) &&
+                        (this.schedules[machineId].getPartId(j) != this.schedules[machineId].getPartId(j + 1))) {
+                    int changeoverTime = this.getInstance().changeoverTime[this.schedules[machineId].getPartId(j)][this.schedules[machineId].getPartId(j + 1)];
                     machineTime += changeoverTime;
                     currentPeriodDuration += changeoverTime;
                     accumulatedChangeOverTime += changeoverTime;
-                    sb.append("\tChangeover\t").append(changeoverTime).append("\t").append(machineTime).append("\t").append(period + 1).append("\t").append(Arrays.toString(machineProducedParts)).append("\t").append(this.solutionData[machineId][j].getDuration()).append("\n");
+                    sb.append("\tChangeover\t").append(changeoverTime).append("\t").append(machineTime).append("\t").append(period + 1).append("\t").append(Arrays.toString(this.getInstance().toFileParts(machineProducedParts))).append("\t").append(this.schedules[machineId].getDuration(j)).append("\n");
                     // If changeover time reaches the end of the period, account for it in total time, and reset period
                     if (currentPeriodDuration >= machineCapacity) {
                         currentPeriodDuration -= machineCapacity;
@@ -427,7 +669,8 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
         }
         sb.append("\nMaximum time: ").append(maximumTime).append("\n");
 
-        int [] totalProducedParts = new int[this.getInstance().getNumParts()];
+        // Parts are exported with their identifiers in the instance file, including the parts removed from the instance
+        int [] totalProducedParts = new int[this.getInstance().getNumPeriods()];
         int [] lastInventory = new int[this.getInstance().getNumParts()];
         int [] difference = new int[this.getInstance().getNumParts()];
         int [][] weeklyProducedParts2 = new int[this.getInstance().getNumPeriods()][this.getInstance().getNumParts()];
@@ -450,32 +693,32 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
                     allShortage[i][j] = (-1) * inventoryLevel[j];
                 }
             }
-            sb.append("\tProduction ").append(i + 1).append(": ").append(Arrays.toString(weeklyProducedParts2[i])).append("\n");
-            sb.append("\tOrig. Inv. Level ").append(i + 1).append(": ").append(Arrays.toString(this.getInstance().getInventoryLevelByPeriod(i))).append("\n");
-            sb.append("\tInv. Level ").append(i + 1).append(": ").append(Arrays.toString(inventoryLevel)).append("\n\n");
+            sb.append("\tProduction ").append(i + 1).append(": ").append(Arrays.toString(this.getInstance().toFileParts(weeklyProducedParts2[i]))).append("\n");
+            sb.append("\tOrig. Inv. Level ").append(i + 1).append(": ").append(Arrays.toString(this.getInstance().toFileInventoryLevels(this.getInstance().getInventoryLevelByPeriod(i), i))).append("\n");
+            sb.append("\tInv. Level ").append(i + 1).append(": ").append(Arrays.toString(this.getInstance().toFileInventoryLevels(inventoryLevel, i))).append("\n\n");
             allInventory[i] = inventoryLevel;
         }
 
         sb.append("\nWeekly produced parts:\n");
         for (int i=0; i<this.getInstance().getNumPeriods(); i++) {
-            sb.append("\tPeriod ").append(i + 1).append(": ").append(Arrays.toString(weeklyProducedParts2[i])).append("\n");
+            sb.append("\tPeriod ").append(i + 1).append(": ").append(Arrays.toString(this.getInstance().toFileParts(weeklyProducedParts2[i]))).append("\n");
         }
 
         sb.append("\nAll Inventory:\n");
         for (int i=0; i<this.getInstance().getNumPeriods(); i++) {
-            sb.append("\tPeriod ").append(i + 1).append(": ").append(Arrays.toString(allInventory[i])).append("\n");
+            sb.append("\tPeriod ").append(i + 1).append(": ").append(Arrays.toString(this.getInstance().toFileInventoryLevels(allInventory[i], i))).append("\n");
         }
 
         sb.append("\nAll Shortage:\n");
         for (int i=0; i<this.getInstance().getNumPeriods(); i++) {
-            sb.append("\tPeriod ").append(i + 1).append(": ").append(Arrays.toString(allShortage[i])).append("\n");
+            sb.append("\tPeriod ").append(i + 1).append(": ").append(Arrays.toString(this.getInstance().toFileParts(allShortage[i]))).append("\n");
         }
 
         sb.append("\n\nTotal production:\t").append("\t").append(Arrays.toString(totalProducedParts));
 
-        sb.append("\nOrig. Inv. Level:\t").append("\t").append(Arrays.toString(lastInventory));
+        sb.append("\nOrig. Inv. Level:\t").append("\t").append(Arrays.toString(this.getInstance().toFileInventoryLevels(lastInventory, this.getInstance().getNumPeriods() - 1)));
 
-        sb.append("\nInventory Level:\t").append("\t").append(Arrays.toString(difference));
+        sb.append("\nInventory Level:\t").append("\t").append(Arrays.toString(this.getInstance().toFileInventoryLevels(difference, this.getInstance().getNumPeriods() - 1)));
 
         sb.append("\nShortage f.o.:\t\t\t\t").append(objFunctionShortage);
         sb.append("\nTotal changeover time:\t\t").append(accumulatedChangeOverTime).append("\n");
@@ -514,22 +757,25 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
     /**
      * Adds a work slot to the given machineID as the current last slot
      * @param machineId Id of the machine to add the work slot
-     * @param workSlot Work slot to add
+     * @param workSlot Work slot to add. Its timing is updated, but the object is not stored in the solution.
      */
     public void addWorkSlot(int machineId, WorkSlot workSlot) {
 
-        if (this.numberOfMachineWorkSlots[machineId] == this.solutionData[machineId].length) {
+        var schedule = getWritableSchedule(machineId);
+        int[][] production = getWritableMachineWeeklyProducedParts(machineId);
+        if (schedule.size() == this.getInstance().maximumWorkSlots()) {
             throw new ArrayIndexOutOfBoundsException("The machine " + machineId + " has no more work slots available");
         }
 
         // Calculate initial time and period
         double iniTime = 0;
         int iniPeriod = 0;
-        if (this.numberOfMachineWorkSlots[machineId] > 0) {
+        if (schedule.size() > 0) {
             // Not first workslot, add changeover time to previous workslot
-            double changeover = this.getInstance().changeoverTime[workSlot.getPartId()][this.solutionData[machineId][this.numberOfMachineWorkSlots[machineId]-1].getPartId()];
-            iniTime = this.solutionData[machineId][this.numberOfMachineWorkSlots[machineId]-1].getEndTime() + changeover;
-            iniPeriod = this.solutionData[machineId][this.numberOfMachineWorkSlots[machineId]-1].getEndPeriod();
+            int last = schedule.size() - 1;
+            double changeover = this.getInstance().changeoverTime[workSlot.getPartId()][schedule.getPartId(last)];
+            iniTime = schedule.getEndTime(last) + changeover;
+            iniPeriod = schedule.getEndPeriod(last);
             // Add changeover time to total changeover time
             this.changeoverTime += changeover;
 
@@ -550,21 +796,22 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
         double endTime = iniTime + workSlot.getDuration();
         if (endTime >= machineCapacity) {
             if (endPeriod < this.getInstance().getNumPeriods())
-                machineWeeklyProducedParts[machineId][endPeriod][workSlot.getPartId()] += (int) Math.ceil((machineCapacity-iniTime) * this.getInstance().productionRate[workSlot.getPartId()][machineId]);
+                production[endPeriod][workSlot.getPartId()] += (int) Math.ceil((machineCapacity-iniTime) * this.getInstance().productionRate[workSlot.getPartId()][machineId]);
             endTime -= machineCapacity;
             endPeriod++;
             if (endPeriod < this.getInstance().getNumPeriods())
-                machineWeeklyProducedParts[machineId][endPeriod][workSlot.getPartId()] += (int) Math.ceil(endTime * this.getInstance().productionRate[workSlot.getPartId()][machineId]);
+                production[endPeriod][workSlot.getPartId()] += (int) Math.ceil(endTime * this.getInstance().productionRate[workSlot.getPartId()][machineId]);
         } else {
             if (endPeriod < this.getInstance().getNumPeriods())
-                machineWeeklyProducedParts[machineId][endPeriod][workSlot.getPartId()] += (int) Math.ceil(workSlot.getDuration() * this.getInstance().productionRate[workSlot.getPartId()][machineId]);
+                production[endPeriod][workSlot.getPartId()] += (int) Math.ceil(workSlot.getDuration() * this.getInstance().productionRate[workSlot.getPartId()][machineId]);
         }
         workSlot.setEndTime(endTime);
         workSlot.setEndPeriod(endPeriod);
 
         // Adds a work slot to the given machineID as the last slot
-        this.solutionData[machineId][this.numberOfMachineWorkSlots[machineId]] = workSlot;
-        this.numberOfMachineWorkSlots[machineId]++;
+        schedule.add(workSlot.getPartId(), workSlot.getDuration());
+        schedule.setTiming(schedule.size() - 1, iniTime, iniPeriod, endTime, endPeriod);
+        resetDontLook(machineId, schedule.size() - 1);
     }
 
     /**
@@ -573,12 +820,14 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
      * of the shortage attribute. This method is called ONLY by constructive methods.
      */
     public void accumulateWeeklyProductionAndCalculatesScore(boolean accumulateWeeklyProduction) {
+        clearDontLook();
         if (accumulateWeeklyProduction) {
-            // Begins in the second period
-            for (int period = 1; period < this.getInstance().getNumPeriods(); period++) {
-                for (int machine = 0; machine < this.getInstance().getNumMachines(); machine++) {
+            for (int machine = 0; machine < this.getInstance().getNumMachines(); machine++) {
+                int[][] production = getWritableMachineWeeklyProducedParts(machine);
+                // Begins in the second period
+                for (int period = 1; period < this.getInstance().getNumPeriods(); period++) {
                     for (int part = 0; part < this.getInstance().getNumParts(); part++) {
-                        this.machineWeeklyProducedParts[machine][period][part] += this.machineWeeklyProducedParts[machine][period - 1][part];
+                        production[period][part] += production[period - 1][part];
                     }
                 }
             }
@@ -586,11 +835,20 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
         }
 
 
+        // Weekly production of all the machines
+        this.weeklyProducedParts = new int[this.getInstance().getNumPeriods()][this.getInstance().getNumParts()];
+        this.ownsWeeklyProducedParts = true;
+        calculateWeeklyProducedParts(this.machineWeeklyProducedParts, this.weeklyProducedParts, this.getInstance());
+
         // Shortage is calculated for each week
-        int[][] weeklyProductShortage = new int[this.getInstance().getNumPeriods()][this.getInstance().getNumParts()];
-        int[] weeklyShortage = fullCalculateWeeklyShortage(this.machineWeeklyProducedParts, weeklyProductShortage);
-        int[][] weeklyProducedParts = new int[this.getInstance().getNumPeriods()][this.getInstance().getNumParts()];
-        calculateWeeklyProducedParts(this.machineWeeklyProducedParts, weeklyProducedParts,this.getInstance());
+        int[] weeklyShortage = new int[this.getInstance().getNumPeriods()];
+        this.weeklyProducedPartsShortage = 0;
+        for (int period = 0; period < this.getInstance().getNumPeriods(); period++) {
+            for (int part = 0; part < this.getInstance().getNumParts(); part++) {
+                weeklyShortage[period] += cellShortage(this.weeklyProducedParts[period][part] + this.getInstance().inventory[part][period]);
+            }
+            this.weeklyProducedPartsShortage += weeklyShortage[period];
+        }
 
         this.shortage = calculateShortageFunction(weeklyShortage);
 
@@ -634,7 +892,7 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
     public static void calculateWeeklyProducedParts(int[][][] machineWeeklyProducedParts, int[][] weeklyProducedParts, CLSPInstance instance) {
         for (int period = 0; period < instance.getNumPeriods(); period++) {
             for (int machine = 0; machine < instance.getNumMachines(); machine++) {
-                for (int part = 0; part < instance.getNumParts(); part++) {
+                for (int part : instance.getProducibleParts(machine)) {
                     weeklyProducedParts[period][part] += machineWeeklyProducedParts[machine][period][part];
                 }
             }
@@ -648,15 +906,137 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
      * @return The maximum time of the machine.
      * /
     private double calculateMachineMaxTime(int machine) {
-        double maxTime = this.solutionData[machine][this.numberOfMachineWorkSlots[machine]-1].getEndTime();
+        double maxTime = this.schedules[machine].getEndTime(this.schedules[machine].size()-1);
         // The following cannot be a product since the machine capacity is not constant
-        for (int i = 0; i<this.solutionData[machine][this.numberOfMachineWorkSlots[machine]-1].getEndPeriod(); i++) {
+        for (int i = 0; i<this.schedules[machine].getEndPeriod(this.schedules[machine].size()-1); i++) {
             maxTime += this.getInstance().getMachineCapacity(machine,i);
         }
         machineMaxTime[machine] = maxTime;
         return maxTime;
     }
 */
+    /**
+     * Shortage of a single period and part
+     *
+     * @param difference Produced parts plus inventory of the period and part
+     * @return shortage of the cell, 0 if the demand is satisfied
+     */
+    static int cellShortage(int difference) {
+        return (difference < 0) ? (-1) * difference : 0;
+    }
+
+    /**
+     * Updates the weekly produced parts of all the machines and its shortage when the weekly production of a machine
+     * is going to be replaced. Only the cells that change are visited. Must be called before replacing the row.
+     *
+     * @param machineId Machine whose weekly production changes
+     * @param newMachineWeeklyProducedParts New weekly production of the machine
+     */
+    private void updateWeeklyProducedParts(int machineId, int[][] newMachineWeeklyProducedParts) {
+        int[][] current = this.machineWeeklyProducedParts[machineId];
+        if (current == newMachineWeeklyProducedParts) {
+            return;
+        }
+        if (!ownsWeeklyProducedParts) {
+            int[][] copy = new int[weeklyProducedParts.length][];
+            for (int period = 0; period < weeklyProducedParts.length; period++) {
+                copy[period] = weeklyProducedParts[period].clone();
+            }
+            weeklyProducedParts = copy;
+            ownsWeeklyProducedParts = true;
+        }
+        // Cells are only recorded while the array is the one kept by the journal, a later copy is discarded as a whole
+        boolean record = journalActive && weeklyProducedParts == journal.weeklyProducedParts;
+        // The production of the machine only changes for the parts that it is able to produce
+        int[] parts = this.getInstance().getProducibleParts(machineId);
+        for (int period = 0; period < this.getInstance().getNumPeriods(); period++) {
+            for (int part : parts) {
+                int change = newMachineWeeklyProducedParts[period][part] - current[period][part];
+                if (change != 0) {
+                    int difference = weeklyProducedParts[period][part] + this.getInstance().inventory[part][period];
+                    weeklyProducedPartsShortage += cellShortage(difference + change) - cellShortage(difference);
+                    weeklyProducedParts[period][part] += change;
+                    if (record) {
+                        journal.recordCell(period, part, change);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Shortage of the weekly produced parts of all the machines, used as starting point of the incremental shortage
+     * calculations.
+     *
+     * @return shortage kept with the weekly produced parts
+     */
+    public int getWeeklyProducedPartsShortage() {
+        return weeklyProducedPartsShortage;
+    }
+
+    /**
+     * Calculates the shortage of each part over all the periods, from the weekly produced parts of all the machines.
+     * The sum of all the parts is the shortage kept with the weekly produced parts.
+     *
+     * @return shortage of each part
+     */
+    public int[] calculatePartShortage() {
+        int[] partShortage = new int[this.getInstance().getNumParts()];
+        for (int period = 0; period < this.getInstance().getNumPeriods(); period++) {
+            for (int part = 0; part < this.getInstance().getNumParts(); part++) {
+                partShortage[part] += cellShortage(weeklyProducedParts[period][part] + this.getInstance().inventory[part][period]);
+            }
+        }
+        return partShortage;
+    }
+
+    /**
+     * Calculates the shortage of the solution if the weekly production of one or two machines is replaced, without
+     * modifying the solution. Only the cells whose production changes are visited, using the weekly produced parts
+     * of all the machines kept by the solution. The result is the same as calculating it from scratch with
+     * fullCalculateWeeklyShortage and calculateShortageFunction.
+     *
+     * @param machineIni First machine whose production changes
+     * @param newIniMachineWeeklyProducedParts New weekly production of the first machine
+     * @param machineEnd Second machine whose production changes, it can be the same as the first one
+     * @param newEndMachineWeeklyProducedParts New weekly production of the second machine, ignored if it is the same
+     *                                         machine
+     * @return shortage of the solution after the change
+     */
+    public double calculateShortageAfterChange(int machineIni, int[][] newIniMachineWeeklyProducedParts, int machineEnd, int[][] newEndMachineWeeklyProducedParts) {
+        int[][] currentIni = this.machineWeeklyProducedParts[machineIni];
+        int[][] currentEnd = this.machineWeeklyProducedParts[machineEnd];
+        boolean twoMachines = machineIni != machineEnd;
+        // The production of a machine only changes for the parts that it is able to produce
+        int[] iniParts = this.getInstance().getProducibleParts(machineIni);
+        int[] endParts = this.getInstance().getProducibleParts(machineEnd);
+        int newShortage = weeklyProducedPartsShortage;
+        for (int period = 0; period < this.getInstance().getNumPeriods(); period++) {
+            for (int part : iniParts) {
+                int change = newIniMachineWeeklyProducedParts[period][part] - currentIni[period][part];
+                if (twoMachines)
+                    change += newEndMachineWeeklyProducedParts[period][part] - currentEnd[period][part];
+                if (change != 0) {
+                    int difference = weeklyProducedParts[period][part] + this.getInstance().inventory[part][period];
+                    newShortage += cellShortage(difference + change) - cellShortage(difference);
+                }
+            }
+            if (twoMachines) {
+                // Parts of the second machine not visited with the first one
+                for (int part : endParts) {
+                    if (this.getInstance().productionRate[part][machineIni] > 0)
+                        continue;
+                    int change = newEndMachineWeeklyProducedParts[period][part] - currentEnd[period][part];
+                    if (change != 0) {
+                        int difference = weeklyProducedParts[period][part] + this.getInstance().inventory[part][period];
+                        newShortage += cellShortage(difference + change) - cellShortage(difference);
+                    }
+                }
+            }
+        }
+        return newShortage;
+    }
+
     public double calculateShortageFunction(int[] weeklyShortage) {
         double shortage = 0;
         for (int period=0; period<this.getInstance().getNumPeriods(); period++) {
@@ -668,57 +1048,116 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
 
     /**
      * Updates the timing of the work slots of the given machine, starting from the given position and ending in the
-     * last workslot.
+     * last workslot. The don't look bits are not reset, since the callers that change the work slots reset them.
      * @param machineId Id of the machine to update the timing
      * @param initialPosition Initial position to start updating the timing
      */
     private void updateWorkSlotTiming(int machineId, int initialPosition) {
-        var wsArray = this.solutionData[machineId];
-        for (int i = initialPosition; i<this.numberOfMachineWorkSlots[machineId]; i++) {
-            updateIndividualWorkSlotTiming(i,wsArray, machineId, this.getInstance());
+        var schedule = getWritableSchedule(machineId);
+        for (int i = initialPosition; i<schedule.size(); i++) {
+            updateIndividualWorkSlotTiming(i, schedule, machineId, this.getInstance());
+        }
+    }
+
+    /**
+     * Checks the don't look bit of a part
+     *
+     * @param partId Id of the part
+     * @return true if the work slots of the part should not be used as initial work slot of the moves
+     */
+    public boolean isDontLook(int partId) {
+        return dontLookParts[partId];
+    }
+
+    /**
+     * Sets the don't look bit of a part, because none of its work slots has an improving move
+     *
+     * @param partId Id of the part
+     */
+    public void setDontLook(int partId) {
+        writeDontLook(partId, true);
+    }
+
+    /**
+     * Resets the don't look bits of the parts of a machine affected by a change of its work slots from the given
+     * position: the parts of the work slots that end in the period where the change begins, or in the
+     * DONT_LOOK_PERIOD_WINDOW previous periods, or later.
+     *
+     * @param machineId Id of the machine
+     * @param position First position of the machine that has changed
+     */
+    public void resetDontLook(int machineId, int position) {
+        var schedule = schedules[machineId];
+        if (schedule.size() == 0)
+            return;
+        int first = Math.min(position, schedule.size() - 1);
+        int fromPeriod = schedule.getIniPeriod(first) - DONT_LOOK_PERIOD_WINDOW;
+        // End periods are sorted, so the affected work slots are at the end of the machine
+        for (int i = schedule.size() - 1; i >= 0 && schedule.getEndPeriod(i) >= fromPeriod; i--) {
+            writeDontLook(schedule.getPartId(i), false);
+        }
+    }
+
+    /**
+     * Resets all the don't look bits
+     */
+    public void clearDontLook() {
+        if (journalActive) {
+            for (int part = 0; part < dontLookParts.length; part++) {
+                writeDontLook(part, false);
+            }
+        } else {
+            Arrays.fill(dontLookParts, false);
+        }
+    }
+
+    private void writeDontLook(int partId, boolean value) {
+        if (dontLookParts[partId] != value) {
+            if (journalActive) {
+                journal.recordDontLook(partId);
+            }
+            dontLookParts[partId] = value;
         }
     }
 
     /**
      * Updates the timing of the work slot in position i of the given machine.
      * @param i Position of the work slot to update the timing
-     * @param wsArray Array of work slots of the machine
+     * @param schedule Work slots of the machine
      * @param machineId Id of the machine to update the timing
      * @param instance Instance of the problem
      */
-    public static void updateIndividualWorkSlotTiming(int i, WorkSlot[] wsArray, int machineId, CLSPInstance instance) {
+    public static void updateIndividualWorkSlotTiming(int i, MachineSchedule schedule, int machineId, CLSPInstance instance) {
+        double iniTime;
+        int iniPeriod;
         if (i == 0) {
             // Initial position must be 0, so the initial workslot is the first one
-            wsArray[i].setIniTime(0);
-            wsArray[i].setIniPeriod(0);
+            iniTime = 0;
+            iniPeriod = 0;
         } else {
             // Add changeover time with previous workslot
-            wsArray[i].setIniTime(wsArray[i - 1].getEndTime()+instance.changeoverTime[wsArray[i - 1].getPartId()][wsArray[i].getPartId()]);
-            wsArray[i].setIniPeriod(wsArray[i - 1].getEndPeriod());
+            iniTime = schedule.getEndTime(i - 1) + instance.changeoverTime[schedule.getPartId(i - 1)][schedule.getPartId(i)];
+            iniPeriod = schedule.getEndPeriod(i - 1);
             // If changeover time exceeds the period, update the period
-            if (wsArray[i].getIniTime() > instance.getMachineCapacity(machineId,wsArray[i - 1].getEndPeriod())) {
-                wsArray[i].setIniTime(wsArray[i].getIniTime() - instance.getMachineCapacity(machineId,wsArray[i - 1].getEndPeriod()));
-                wsArray[i].setIniPeriod(wsArray[i - 1].getEndPeriod()+1);
+            if (iniTime > instance.getMachineCapacity(machineId, iniPeriod)) {
+                iniTime -= instance.getMachineCapacity(machineId, iniPeriod);
+                iniPeriod++;
             }
         }
         // Update end time and period
-        wsArray[i].setEndTime(wsArray[i].getIniTime()+wsArray[i].getDuration());
+        double endTime = iniTime + schedule.getDuration(i);
+        int endPeriod = iniPeriod;
         // If end time exceeds the period, update the period
-        if (wsArray[i].getEndTime() > instance.getMachineCapacity(machineId,wsArray[i].getIniPeriod())) {
-            var endTime = wsArray[i].getEndTime();
-            int endPeriod = wsArray[i].getIniPeriod();
+        if (endTime > instance.getMachineCapacity(machineId, iniPeriod)) {
             do {
-                endTime -= instance.getMachineCapacity(machineId, wsArray[i].getIniPeriod());
+                endTime -= instance.getMachineCapacity(machineId, iniPeriod);
                 endPeriod++;
-                wsArray[i].setEndTime(endTime);
-                wsArray[i].setEndPeriod(endPeriod);
-            } while (endTime > instance.getMachineCapacity(machineId,wsArray[i].getIniPeriod()));
-        } else {
-            wsArray[i].setEndPeriod(wsArray[i].getIniPeriod());
+            } while (endTime > instance.getMachineCapacity(machineId, iniPeriod));
         }
+        schedule.setTiming(i, iniTime, iniPeriod, endTime, endPeriod);
         // Assert
-        if (wsArray[i].getEndTime() > instance.getMachineCapacity(machineId,wsArray[i].getEndPeriod()))
-            throw new RuntimeException("Collapse: workslot with end time larger than allowed - "+wsArray[i]);
+        if (endTime > instance.getMachineCapacity(machineId, endPeriod))
+            throw new RuntimeException("Collapse: workslot with end time larger than allowed - " + schedule.toWorkSlot(i));
     }
 
     /**
@@ -727,10 +1166,16 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
      * @param givenMachineWeeklyProducedParts Number of produced parts by machine, period and part
      */
     private void updateWeeklyProduction(int [][][] givenMachineWeeklyProducedParts) {
-        for (int machineId=0; machineId<this.getInstance().getNumMachines(); machineId++)
+        for (int machineId=0; machineId<this.getInstance().getNumMachines(); machineId++) {
+            // Rows taken from this solution are already up to date
+            if (givenMachineWeeklyProducedParts[machineId] == this.machineWeeklyProducedParts[machineId])
+                continue;
+            updateWeeklyProducedParts(machineId, givenMachineWeeklyProducedParts[machineId]);
+            int[][] production = getWritableMachineWeeklyProducedParts(machineId);
             for (int i = 0; i < this.getInstance().getNumPeriods(); i++)
                 if (this.getInstance().getNumParts() >= 0)
-                    System.arraycopy(givenMachineWeeklyProducedParts[machineId][i], 0, this.machineWeeklyProducedParts[machineId][i], 0, this.getInstance().getNumParts());
+                    System.arraycopy(givenMachineWeeklyProducedParts[machineId][i], 0, production[i], 0, this.getInstance().getNumParts());
+        }
     }
 
     public void updateDataStructures(int initialMachineId, int initialPosition, int finalMachineId, int finalPosition, double changeoverTime, int[][][] machineWeeklyProducedParts, double shortage) {
@@ -746,74 +1191,47 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
     }
 
     /**
-     * Collapses consecutive work slots corresponding to the same product on each machine.
+     * Collapses consecutive work slots corresponding to the same product on each machine. The don't look bits are
+     * kept: after uncollapse, collapsing again gives the same work slots on the machines that have not changed.
      */
     public void collapse() {
 
-        WorkSlot[][] collapsedSolutionData = new WorkSlot[this.getInstance().getNumMachines()][this.getSolutionData()[0].length];
-        for (int machine = 0; machine < solutionData.length; machine++) {
-            int i = 0;
-            int newWorkslots = 0;
-            while (i < this.numberOfMachineWorkSlots[machine]-1) {
-                int j = i+1;
-                WorkSlot w = new WorkSlot(solutionData[machine][i]);
-                WorkSlot next = solutionData[machine][j];
-                while (w.getPartId() == next.getPartId()) {
-                    w.collapse(next);
-                    j++;
-                    if (j == this.numberOfMachineWorkSlots[machine]) {
-                        break;
-                    }
-                    next = solutionData[machine][j];
-                }
-                collapsedSolutionData[machine][newWorkslots] = w;
-                newWorkslots++;
-                i = j;
-            }
-            // Last two workslots were different, so we add the last one, only if there are more than one workslot
-            if ((this.numberOfMachineWorkSlots[machine] > 1) &&
-               (solutionData[machine][this.numberOfMachineWorkSlots[machine]-1].getPartId() != solutionData[machine][this.numberOfMachineWorkSlots[machine]-2].getPartId())) {
-                collapsedSolutionData[machine][newWorkslots] = new WorkSlot(solutionData[machine][i]);
-                newWorkslots++;
-            }
-            this.numberOfMachineWorkSlots[machine] = newWorkslots;
+        for (int machine = 0; machine < schedules.length; machine++) {
+            getWritableSchedule(machine).collapse();
         }
 
-        this.solutionData = collapsedSolutionData;
-
         // Update timing:
-        for (int machine = 0; machine < solutionData.length; machine++) {
+        for (int machine = 0; machine < schedules.length; machine++) {
             updateWorkSlotTiming(machine,0);
         }
 
     }
 
     /**
-     * Separates work slots corresponding to the same product on each machine according to minimum batch size.
+     * Separates work slots corresponding to the same product on each machine according to minimum batch size. The
+     * don't look bits are kept, see collapse.
      */
     public void uncollapse() {
         double minBatchSize = this.getInstance().getMinimumWorkload();
 
-        WorkSlot[][] uncollapsedSolutionData = new WorkSlot[this.getInstance().getNumMachines()][this.getInstance().maximumWorkSlots()];
-        for (int machine = 0; machine < solutionData.length; machine++) {
-            int newWorkslots = 0;
-            for (int i = 0; i < this.numberOfMachineWorkSlots[machine]; i++) {
-                double duration = solutionData[machine][i].getDuration();
+        for (int machine = 0; machine < schedules.length; machine++) {
+            var schedule = schedules[machine];
+            var uncollapsed = new MachineSchedule(schedule.size());
+            for (int i = 0; i < schedule.size(); i++) {
+                double duration = schedule.getDuration(i);
                 while (duration >= 2 * minBatchSize) {
-                    uncollapsedSolutionData[machine][newWorkslots] = new WorkSlot(solutionData[machine][i].getPartId(), minBatchSize);
-                    newWorkslots++;
+                    uncollapsed.add(schedule.getPartId(i), minBatchSize);
                     duration -= minBatchSize;
                 }
-                uncollapsedSolutionData[machine][newWorkslots] = new WorkSlot(solutionData[machine][i].getPartId(), duration);
-                newWorkslots++;
+                uncollapsed.add(schedule.getPartId(i), duration);
             }
-            this.numberOfMachineWorkSlots[machine] = newWorkslots;
+            journalMachine(machine);
+            schedules[machine] = uncollapsed;
+            ownsSchedule[machine] = true;
         }
 
-        this.solutionData = uncollapsedSolutionData;
-
         // Update timing:
-        for (int machine = 0; machine < solutionData.length; machine++) {
+        for (int machine = 0; machine < schedules.length; machine++) {
             updateWorkSlotTiming(machine,0);
         }
 
@@ -821,9 +1239,243 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
 
 
 
+    /**
+     * Starts recording the changes of the solution, so they can be undone by rollbackJournal instead of cloning the
+     * solution before trying them. The first time a machine changes, the journal keeps its schedule and weekly
+     * production, and the copy-on-write flags make the change write a copy. The cells of the weekly production of all
+     * the machines and the don't look bits are recorded with their change, so a rollback takes time proportional to
+     * the machines and cells changed. Changes of the unassigned work slots are not recorded, since the journal is
+     * intended for the moves of shakes and local searches.
+     */
+    public void beginJournal() {
+        if (journalActive) {
+            throw new IllegalStateException("The journal is already active");
+        }
+        if (journal == null) {
+            journal = new Journal(this.getInstance().getNumMachines());
+        }
+        journal.begin(this);
+        journalActive = true;
+    }
+
+    /**
+     * Keeps the changes made since beginJournal and stops recording
+     */
+    public void commitJournal() {
+        if (!journalActive) {
+            throw new IllegalStateException("The journal is not active");
+        }
+        journal.clear();
+        journalActive = false;
+    }
+
+    /**
+     * Restores the solution to its state when beginJournal was called and stops recording
+     */
+    public void rollbackJournal() {
+        if (!journalActive) {
+            throw new IllegalStateException("The journal is not active");
+        }
+        journal.rollback(this);
+        journal.clear();
+        journalActive = false;
+    }
+
+    public boolean isJournalActive() {
+        return journalActive;
+    }
+
+    /**
+     * 64-bit fingerprint of the solution, combining the Zobrist hashes of the sequences of all the machines (see
+     * MachineSchedule.getHash). Solutions with the same work slots in every machine have the same fingerprint, and
+     * different solutions have a different one unless there is a collision, which is very unlikely.
+     *
+     * @return fingerprint of the solution
+     */
+    public long getFingerprint() {
+        long fingerprint = 0;
+        for (int machineId = 0; machineId < this.getInstance().getNumMachines(); machineId++) {
+            // The machine is mixed in, so the same sequence in different machines does not cancel out
+            fingerprint ^= MachineSchedule.mix(this.schedules[machineId].getHash() + (machineId + 1) * 0x9E3779B97F4A7C15L);
+        }
+        return fingerprint;
+    }
+
+    public VisitedSolutions getVisitedSolutions() {
+        return visitedSolutions;
+    }
+
+    /**
+     * Uses the given visited solutions, for example the ones of another solution of the same run built independently,
+     * or a local set of a parallel search (see VisitedSolutions)
+     */
+    public void setVisitedSolutions(VisitedSolutions visitedSolutions) {
+        this.visitedSolutions = visitedSolutions;
+    }
+
+    /**
+     * Keeps the schedule and weekly production of a machine the first time it changes while the journal is active,
+     * and removes their ownership so they are copied before being written.
+     */
+    private void journalMachine(int machineId) {
+        if (journalActive && journal.recordMachine(this, machineId)) {
+            ownsSchedule[machineId] = false;
+            ownsWeeklyProduction[machineId] = false;
+        }
+    }
+
+    /**
+     * Changes recorded since beginJournal. Schedules and machine rows are restored by reference, since they are never
+     * written after being recorded, and the cells of the weekly production of all the machines by undoing their change.
+     */
+    private static final class Journal {
+        // Machines changed, with their schedule and weekly production before the first change
+        private final boolean[] recorded;
+        private final int[] machines;
+        private int numMachines;
+        private final MachineSchedule[] schedules;
+        private final boolean[] ownsSchedule;
+        private final int[][][] machineWeeklyProducedParts;
+        private final boolean[] ownsWeeklyProduction;
+
+        // Weekly production of all the machines, and the cells changed in it while it is not replaced by a copy
+        private int[][] weeklyProducedParts;
+        private boolean ownsWeeklyProducedParts;
+        private int[] cellPeriod = new int[16];
+        private int[] cellPart = new int[16];
+        private int[] cellChange = new int[16];
+        private int numCells;
+
+        // Parts whose don't look bit has been flipped, in order
+        private int[] dontLookParts = new int[16];
+        private int numDontLook;
+
+        private double score;
+        private double changeoverTime;
+        private double shortage;
+        private int weeklyProducedPartsShortage;
+
+        Journal(int numMachines) {
+            this.recorded = new boolean[numMachines];
+            this.machines = new int[numMachines];
+            this.schedules = new MachineSchedule[numMachines];
+            this.ownsSchedule = new boolean[numMachines];
+            this.machineWeeklyProducedParts = new int[numMachines][][];
+            this.ownsWeeklyProduction = new boolean[numMachines];
+        }
+
+        void begin(CLSPSolution s) {
+            weeklyProducedParts = s.weeklyProducedParts;
+            ownsWeeklyProducedParts = s.ownsWeeklyProducedParts;
+            score = s.score;
+            changeoverTime = s.changeoverTime;
+            shortage = s.shortage;
+            weeklyProducedPartsShortage = s.weeklyProducedPartsShortage;
+        }
+
+        /**
+         * @return true if the machine had not been recorded yet
+         */
+        boolean recordMachine(CLSPSolution s, int machineId) {
+            if (recorded[machineId]) {
+                return false;
+            }
+            recorded[machineId] = true;
+            machines[numMachines++] = machineId;
+            schedules[machineId] = s.schedules[machineId];
+            ownsSchedule[machineId] = s.ownsSchedule[machineId];
+            machineWeeklyProducedParts[machineId] = s.machineWeeklyProducedParts[machineId];
+            ownsWeeklyProduction[machineId] = s.ownsWeeklyProduction[machineId];
+            return true;
+        }
+
+        void recordCell(int period, int part, int change) {
+            if (numCells == cellChange.length) {
+                cellPeriod = Arrays.copyOf(cellPeriod, 2 * numCells);
+                cellPart = Arrays.copyOf(cellPart, 2 * numCells);
+                cellChange = Arrays.copyOf(cellChange, 2 * numCells);
+            }
+            cellPeriod[numCells] = period;
+            cellPart[numCells] = part;
+            cellChange[numCells] = change;
+            numCells++;
+        }
+
+        void recordDontLook(int partId) {
+            if (numDontLook == dontLookParts.length) {
+                dontLookParts = Arrays.copyOf(dontLookParts, 2 * numDontLook);
+            }
+            dontLookParts[numDontLook++] = partId;
+        }
+
+        /**
+         * A clone of the solution shares its current rows, which may be the recorded ones, so they must not be owned
+         * again after a rollback.
+         */
+        void markShared() {
+            ownsWeeklyProducedParts = false;
+            for (int i = 0; i < numMachines; i++) {
+                ownsSchedule[machines[i]] = false;
+                ownsWeeklyProduction[machines[i]] = false;
+            }
+        }
+
+        void rollback(CLSPSolution s) {
+            for (int i = 0; i < numMachines; i++) {
+                int machine = machines[i];
+                s.schedules[machine] = schedules[machine];
+                s.ownsSchedule[machine] = ownsSchedule[machine];
+                s.machineWeeklyProducedParts[machine] = machineWeeklyProducedParts[machine];
+                s.ownsWeeklyProduction[machine] = ownsWeeklyProduction[machine];
+            }
+
+            // The recorded array may have been replaced by a copy, but the recorded cells were changed in it
+            if (s.weeklyProducedParts != weeklyProducedParts) {
+                s.weeklyProducedParts = weeklyProducedParts;
+                s.ownsWeeklyProducedParts = ownsWeeklyProducedParts;
+            }
+            if (numCells > 0) {
+                if (!s.ownsWeeklyProducedParts) {
+                    // Shared with a clone made while the journal was active, which keeps the changes
+                    int[][] copy = new int[weeklyProducedParts.length][];
+                    for (int period = 0; period < weeklyProducedParts.length; period++) {
+                        copy[period] = weeklyProducedParts[period].clone();
+                    }
+                    s.weeklyProducedParts = copy;
+                    s.ownsWeeklyProducedParts = true;
+                }
+                for (int i = numCells - 1; i >= 0; i--) {
+                    s.weeklyProducedParts[cellPeriod[i]][cellPart[i]] -= cellChange[i];
+                }
+            }
+
+            for (int i = numDontLook - 1; i >= 0; i--) {
+                s.dontLookParts[dontLookParts[i]] = !s.dontLookParts[dontLookParts[i]];
+            }
+
+            s.score = score;
+            s.changeoverTime = changeoverTime;
+            s.shortage = shortage;
+            s.weeklyProducedPartsShortage = weeklyProducedPartsShortage;
+        }
+
+        void clear() {
+            for (int i = 0; i < numMachines; i++) {
+                int machine = machines[i];
+                recorded[machine] = false;
+                schedules[machine] = null;
+                machineWeeklyProducedParts[machine] = null;
+            }
+            numMachines = 0;
+            numCells = 0;
+            numDontLook = 0;
+            weeklyProducedParts = null;
+        }
+    }
+
     public boolean isEmpty() {
         for (int i=0; i<this.getInstance().getNumMachines(); i++) {
-            if (this.numberOfMachineWorkSlots[i] > 0) {
+            if (this.schedules[i].size() > 0) {
                 return false;
             }
         }
@@ -835,7 +1487,8 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
         return Map.of(
                 "Shortage", CLSPSolution::getShortageGurobi,
                 "Changeover", CLSPSolution::getChangeoverTime,
-                "Priority", CLSPSolution::getPriorityGurobi
+                "Priority", CLSPSolution::getPriorityGurobi,
+                "SkippedDuplicates", solution -> solution.getVisitedSolutions().getSkipped()
         );
     }
 
@@ -844,9 +1497,23 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
         updateCommonDataStructures(initialMachineId, initialPosition, finalMachineId, finalPosition, changeoverTime, shortage);
 
         // Updates weekly production of the solution. Assume the array was already copied!!
-        machineWeeklyProducedParts[initialMachineId] = newIniMachineWeeklyProducedParts;
+        journalMachine(initialMachineId);
+        journalMachine(finalMachineId);
+        updateWeeklyProducedParts(initialMachineId, newIniMachineWeeklyProducedParts);
         if (initialMachineId != finalMachineId)
+            updateWeeklyProducedParts(finalMachineId, newEndMachineWeeklyProducedParts);
+        machineWeeklyProducedParts[initialMachineId] = newIniMachineWeeklyProducedParts;
+        ownsWeeklyProduction[initialMachineId] = true;
+        if (initialMachineId != finalMachineId) {
             machineWeeklyProducedParts[finalMachineId] = newEndMachineWeeklyProducedParts;
+            ownsWeeklyProduction[finalMachineId] = true;
+        }
+
+        // Sequences of the solution are the ones that the local search can reach again after a shake
+        var cache = this.getInstance().getProductionProfileCache();
+        cache.store(initialMachineId, this.schedules[initialMachineId], newIniMachineWeeklyProducedParts);
+        if (initialMachineId != finalMachineId)
+            cache.store(finalMachineId, this.schedules[finalMachineId], newEndMachineWeeklyProducedParts);
 
     }
 
@@ -863,12 +1530,15 @@ public class CLSPSolution extends Solution<CLSPSolution, CLSPInstance> {
             // could have changed.
             // TODO Maybe this process could be optimized
             updateWorkSlotTiming(initialMachineId, ini);
+            resetDontLook(initialMachineId, ini);
         } else {
             // Updates timing from each position to the final position of the machine, since the maximum
             // could have changed.
             // TODO Maybe this process could be optimized
             updateWorkSlotTiming(initialMachineId, initialPosition);
             updateWorkSlotTiming(finalMachineId, finalPosition);
+            resetDontLook(initialMachineId, initialPosition);
+            resetDontLook(finalMachineId, finalPosition);
         }
 
 
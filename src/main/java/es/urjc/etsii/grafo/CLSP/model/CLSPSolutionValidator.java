@@ -24,8 +24,8 @@ public class CLSPSolutionValidator extends SolutionValidator<CLSPSolution, CLSPI
         }
 
         for (int machine = 0; machine < solution.getInstance().getNumMachines(); machine++) {
-            for (int w = 0; w < solution.getNumberOfMachineWorkSlots()[machine]; w++) {
-                if (solution.getInstance().productionRate[solution.getSolutionData()[machine][w].getPartId()][machine] == 0) {
+            for (int w = 0; w < solution.getNumberOfMachineWorkSlots(machine); w++) {
+                if (solution.getInstance().productionRate[solution.getSchedule(machine).getPartId(w)][machine] == 0) {
                     return ValidationResult.fail("Solution contains invalid workslot association: " + w + " is not producible in machine " + machine);
                 }
             }
@@ -0,0 +1,66 @@
+package es.urjc.etsii.grafo.CLSP.model;
+
+/**
+ * Reusable structures to evaluate moves without allocating memory for every candidate move. There is one workspace
+ * per thread, sized from the dimensions of the instance the first time it is requested, and replaced only when an
+ * instance with other dimensions is evaluated in the thread. It keeps no reference to the instance, so finished
+ * instances can be collected while the threads are alive. The schedules grow if they need more work slots. The content
+ * is only valid until the next evaluation in the same thread, so moves MUST NOT keep references to it.
+ */
+public final class EvaluationWorkspace {
+
+    private static final ThreadLocal<EvaluationWorkspace> WORKSPACE = new ThreadLocal<>();
+
+    // Dimensions of the weekly produced parts
+    private final int numPeriods;
+    private final int numParts;
+
+    // Work slots of the initial and final machines after the move
+    private final MachineSchedule iniSchedule;
+    private final MachineSchedule endSchedule;
+
+    // Weekly produced parts (period, part) of the initial and final machines after the move
+    private final int[][] iniMachineWeeklyProducedParts;
+    private final int[][] endMachineWeeklyProducedParts;
+
+    private EvaluationWorkspace(CLSPInstance instance) {
+        this.numPeriods = instance.getNumPeriods();
+        this.numParts = instance.getNumParts();
+        int capacity = instance.getNumSlotsNoShortage() + 1;
+        this.iniSchedule = new MachineSchedule(capacity);
+        this.endSchedule = new MachineSchedule(capacity);
+        this.iniMachineWeeklyProducedParts = new int[numPeriods][numParts];
+        this.endMachineWeeklyProducedParts = new int[numPeriods][numParts];
+    }
+
+    /**
+     * Workspace of the current thread for the given instance
+     *
+     * @param instance Instance of the problem
+     * @return workspace of the current thread
+     */
+    public static EvaluationWorkspace get(CLSPInstance instance) {
+        EvaluationWorkspace workspace = WORKSPACE.get();
+        if (workspace == null || workspace.numPeriods != instance.getNumPeriods() || workspace.numParts != instance.getNumParts()) {
+            workspace = new EvaluationWorkspace(instance);
+            WORKSPACE.set(workspace);
+        }
+        return workspace;
+    }
+
+    public MachineSchedule getIniSchedule() {
+        return iniSchedule;
+    }
+
+    public MachineSchedule getEndSchedule() {
+        return endSchedule;
+    }
+
+    public int[][] getIniMachineWeeklyProducedParts() {
+        return iniMachineWeeklyProducedParts;
+    }
+
+    public int[][] getEndMachineWeeklyProducedParts() {
+        return endMachineWeeklyProducedParts;
+    }
+}
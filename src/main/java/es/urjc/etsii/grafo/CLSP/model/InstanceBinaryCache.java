@@ -0,0 +1,203 @@
+package es.urjc.etsii.grafo.CLSP.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary cache of parsed instances. Each instance file is stored in the cache directory with the data of the file and
+ * the data derived from it by the CLSPInstance constructor (see CLSPInstance.DerivedData), in a file named after the
+ * hash of the content of the instance file. Loading an instance from the cache maps the file into memory and copies
+ * the arrays, without parsing text or calculating the derived data again.
+ * <p>
+ * Cache files are never stored next to the instances, since every file of the instance directory is loaded as an
+ * instance. Files are written to a temporary file and moved to their final name, so several processes can share the
+ * cache directory. A cache file that cannot be read or written is ignored, and the instance is parsed as usual.
+ */
+public class InstanceBinaryCache {
+
+    private static final Logger log = LoggerFactory.getLogger(InstanceBinaryCache.class);
+
+    // "CLSP" and version of the format, changed whenever the format or the derived data change
+    private static final int MAGIC = 0x434C5350;
+    private static final int VERSION = 2;
+
+    private final Path directory;
+
+    public InstanceBinaryCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Cache file of an instance file, named after the hash of its content
+     *
+     * @param instanceFile Path of the instance file
+     * @return entry of the cache for the current content of the file, or null if the file cannot be read
+     */
+    public Entry entry(String instanceFile) {
+        try {
+            long hash = contentHash(Path.of(instanceFile));
+            return new Entry(directory.resolve(String.format("%016x.clspbin", hash)), hash);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Instance {} cannot be hashed, it is not cached: {}", instanceFile, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Cache file of the content of an instance file
+     *
+     * @param path Path of the cache file
+     * @param hash Hash of the content of the instance file
+     */
+    public record Entry(Path path, long hash) {
+    }
+
+    /**
+     * Loads an instance from the cache
+     *
+     * @param entry    Cache entry of the instance file
+     * @param filename Name of the instance
+     * @return cached instance, or null if it is not in the cache
+     */
+    public CLSPInstance load(Entry entry, String filename) {
+        if (!Files.isRegularFile(entry.path())) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(entry.path(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != entry.hash()) {
+                return null;
+            }
+            int numParts = buffer.getInt();
+            int numMachines = buffer.getInt();
+            int numPeriods = buffer.getInt();
+            int[][] productionRate = readMatrix(buffer, numParts, numMachines);
+            int[][] changeoverTime = readMatrix(buffer, numParts, numParts);
+            int[][] inventory = readMatrix(buffer, numParts, numPeriods);
+            int[][] capacity = readMatrix(buffer, numMachines, numPeriods);
+            int[][] priority = readMatrix(buffer, numParts, numMachines);
+            int maximumShortage = buffer.getInt();
+            int minimumWorkload = buffer.getInt();
+            int maximumWorkSlots = buffer.getInt();
+            List<WorkSlot> slotsMinimumWorkload = readWorkSlots(buffer);
+            List<WorkSlot> slotsNoShortage = readWorkSlots(buffer);
+            var derived = new CLSPInstance.DerivedData(maximumShortage, minimumWorkload, maximumWorkSlots, slotsMinimumWorkload, slotsNoShortage);
+            return new CLSPInstance(filename, numParts, numMachines, numPeriods, productionRate, changeoverTime, inventory, capacity, priority, derived);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cached instance {} cannot be read, parsing {} again: {}", entry.path(), filename, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores an instance in the cache
+     *
+     * @param entry    Cache entry of the instance file
+     * @param instance Instance parsed from the file
+     */
+    public void store(Entry entry, CLSPInstance instance) {
+        // The data of the file is stored, the parts that can never be short are removed again when loading it
+        var file = instance.getFileData();
+        int numParts = file.numParts();
+        int numMachines = instance.getNumMachines();
+        int numPeriods = instance.getNumPeriods();
+        var derived = instance.getDerivedData();
+        // Header, matrices, derived values and sizes of the lists of work slots
+        int ints = 5 + numParts * numMachines * 2 + numParts * numParts + (numParts + numMachines) * numPeriods + 5;
+        int slots = derived.slotsMinimumWorkload().size() + derived.slotsNoShortage().size();
+        ByteBuffer buffer = ByteBuffer.allocate(ints * Integer.BYTES + Long.BYTES + slots * (Integer.BYTES + Double.BYTES));
+
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(entry.hash());
+        buffer.putInt(numParts).putInt(numMachines).putInt(numPeriods);
+        writeMatrix(buffer, file.productionRate());
+        writeMatrix(buffer, file.changeoverTime());
+        writeMatrix(buffer, file.inventory());
+        writeMatrix(buffer, instance.getCapacity());
+        writeMatrix(buffer, file.priority());
+        buffer.putInt(derived.maximumShortage()).putInt(derived.minimumWorkload()).putInt(derived.maximumWorkSlots());
+        writeWorkSlots(buffer, derived.slotsMinimumWorkload());
+        writeWorkSlots(buffer, derived.slotsNoShortage());
+        buffer.flip();
+
+        try {
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, entry.path().getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            try {
+                Files.move(temporary, entry.path(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, entry.path(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("Instance {} cannot be cached in {}: {}", instance.getId(), directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Hash of the content of a file, reading it 8 bytes at a time from a memory-mapped buffer
+     */
+    static long contentHash(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            long h = size * 0x9E3779B97F4A7C15L;
+            while (buffer.remaining() >= Long.BYTES) {
+                h = Long.rotateLeft(h ^ (buffer.getLong() * 0xC2B2AE3D27D4EB4FL), 31) * 0x9E3779B185EBCA87L;
+            }
+            while (buffer.hasRemaining()) {
+                h = Long.rotateLeft(h ^ (buffer.get() * 0x165667B19E3779F9L), 23) * 0x9E3779B185EBCA87L;
+            }
+            return MachineSchedule.mix(h);
+        }
+    }
+
+    private static int[][] readMatrix(ByteBuffer buffer, int rows, int columns) {
+        int[][] matrix = new int[rows][columns];
+        var ints = buffer.asIntBuffer();
+        for (int i = 0; i < rows; i++) {
+            ints.get(matrix[i]);
+        }
+        buffer.position(buffer.position() + rows * columns * Integer.BYTES);
+        return matrix;
+    }
+
+    private static void writeMatrix(ByteBuffer buffer, int[][] matrix) {
+        for (int[] row : matrix) {
+            buffer.asIntBuffer().put(row);
+            buffer.position(buffer.position() + row.length * Integer.BYTES);
+        }
+    }
+
+    private static List<WorkSlot> readWorkSlots(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        List<WorkSlot> workSlots = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int partId = buffer.getInt();
+            workSlots.add(new WorkSlot(partId, buffer.getDouble()));
+        }
+        return workSlots;
+    }
+
+    private static void writeWorkSlots(ByteBuffer buffer, List<WorkSlot> workSlots) {
+        buffer.putInt(workSlots.size());
+        for (WorkSlot workSlot : workSlots) {
+            buffer.putInt(workSlot.getPartId()).putDouble(workSlot.getDuration());
+        }
+    }
+}
@@ -0,0 +1,478 @@
+package es.urjc.etsii.grafo.CLSP.model;
+
+import java.util.Arrays;
+
+/**
+ * Sequence of work slots assigned to a machine. Instead of one WorkSlot object per position, the data of the
+ * work slots is stored in parallel primitive arrays, so copying a schedule is just a few System.arraycopy calls.
+ * Position i of every array corresponds to the i-th work slot of the machine.
+ */
+public class MachineSchedule {
+
+    private int[] partId;
+    private double[] duration;
+    private double[] iniTime;
+    private double[] endTime;
+    private int[] iniPeriod;
+    private int[] endPeriod;
+
+    // Current number of work slots of the machine
+    private int size;
+
+    // Zobrist hash of the sequence: XOR of the hashes of every (part, duration, position). Once calculated, it is
+    // updated with the positions that change, so it costs the same as the change itself. Copies keep the hash of the
+    // original schedule, so the hash of a modified copy only costs the modification.
+    private long hash;
+    private boolean hashValid;
+
+    // Simulation checkpoints (see CLSPSolution.calculateMachineWeeklyProducedParts), built on demand. Position j
+    // stores the state of the machine before work slot j is processed and position size the final state.
+    // simulatedIncrements stores the production of each period and part of the whole sequence before accumulating it.
+    private int[] checkpointPeriod;
+    private double[] checkpointOffset;
+    private int[] checkpointCapacity;
+    private int[][] simulatedIncrements;
+    private boolean checkpointsValid;
+
+    /**
+     * Creates an empty schedule
+     *
+     * @param capacity Initial number of work slots that can be stored without growing the arrays
+     */
+    public MachineSchedule(int capacity) {
+        capacity = Math.max(capacity, 1);
+        this.partId = new int[capacity];
+        this.duration = new double[capacity];
+        this.iniTime = new double[capacity];
+        this.endTime = new double[capacity];
+        this.iniPeriod = new int[capacity];
+        this.endPeriod = new int[capacity];
+        this.size = 0;
+        this.hash = 0;
+        this.hashValid = true;
+    }
+
+    /**
+     * Copy constructor. Only the used positions are copied, leaving a small margin to grow.
+     *
+     * @param s Schedule to copy
+     */
+    public MachineSchedule(MachineSchedule s) {
+        this(s.size + (s.size >> 3) + 1);
+        copyArrays(s);
+        synchronized (s) {
+            this.hash = s.hash;
+            this.hashValid = s.hashValid;
+        }
+    }
+
+    /**
+     * Overwrites this schedule with the content of the given one, reusing the arrays when possible.
+     *
+     * @param s Schedule to copy
+     */
+    public void copyFrom(MachineSchedule s) {
+        ensureCapacity(s.size);
+        copyArrays(s);
+        this.hash = s.getHash();
+        this.hashValid = true;
+    }
+
+    private void copyArrays(MachineSchedule s) {
+        System.arraycopy(s.partId, 0, this.partId, 0, s.size);
+        System.arraycopy(s.duration, 0, this.duration, 0, s.size);
+        System.arraycopy(s.iniTime, 0, this.iniTime, 0, s.size);
+        System.arraycopy(s.endTime, 0, this.endTime, 0, s.size);
+        System.arraycopy(s.iniPeriod, 0, this.iniPeriod, 0, s.size);
+        System.arraycopy(s.endPeriod, 0, this.endPeriod, 0, s.size);
+        this.size = s.size;
+        this.checkpointsValid = false;
+    }
+
+    /**
+     * Grows the arrays if they cannot store the given number of work slots
+     *
+     * @param capacity Number of work slots to store
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity <= partId.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, partId.length + (partId.length >> 1) + 1);
+        partId = Arrays.copyOf(partId, newCapacity);
+        duration = Arrays.copyOf(duration, newCapacity);
+        iniTime = Arrays.copyOf(iniTime, newCapacity);
+        endTime = Arrays.copyOf(endTime, newCapacity);
+        iniPeriod = Arrays.copyOf(iniPeriod, newCapacity);
+        endPeriod = Arrays.copyOf(endPeriod, newCapacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Zobrist hash of the sequence of parts and durations. Timing is not included, since it only depends on the
+     * sequence and the machine. It is synchronized since schedules can be shared between solutions evaluated in
+     * different threads.
+     *
+     * @return hash of the sequence
+     */
+    public synchronized long getHash() {
+        if (!hashValid) {
+            hash = rangeHash(0, size);
+            hashValid = true;
+        }
+        return hash;
+    }
+
+    /**
+     * Hash of a work slot in a position. It mixes the three values with the SplitMix64 finalizer, instead of drawing
+     * a random table, since durations are real numbers and the number of positions is not bounded.
+     */
+    static long slotHash(int partId, double duration, int position) {
+        long h = mix(((long) partId << 32) ^ position);
+        return mix(h ^ Double.doubleToLongBits(duration));
+    }
+
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * XOR of the hashes of the work slots in positions [from, to)
+     */
+    private long rangeHash(int from, int to) {
+        long h = 0;
+        for (int i = from; i < to; i++) {
+            h ^= slotHash(partId[i], duration[i], i);
+        }
+        return h;
+    }
+
+    /**
+     * Checks if the sequence of parts and durations is the given one
+     */
+    boolean hasSequence(int[] partIds, double[] durations) {
+        return Arrays.equals(partId, 0, size, partIds, 0, partIds.length) && Arrays.equals(duration, 0, size, durations, 0, durations.length);
+    }
+
+    int[] copyPartIds() {
+        return Arrays.copyOf(partId, size);
+    }
+
+    double[] copyDurations() {
+        return Arrays.copyOf(duration, size);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getPartId(int i) {
+        return partId[i];
+    }
+
+    public double getDuration(int i) {
+        return duration[i];
+    }
+
+    public double getIniTime(int i) {
+        return iniTime[i];
+    }
+
+    public double getEndTime(int i) {
+        return endTime[i];
+    }
+
+    public int getIniPeriod(int i) {
+        return iniPeriod[i];
+    }
+
+    public int getEndPeriod(int i) {
+        return endPeriod[i];
+    }
+
+    /**
+     * Sets the timing of the work slot in the given position
+     */
+    public void setTiming(int i, double iniTime, int iniPeriod, double endTime, int endPeriod) {
+        this.iniTime[i] = iniTime;
+        this.iniPeriod[i] = iniPeriod;
+        this.endTime[i] = endTime;
+        this.endPeriod[i] = endPeriod;
+    }
+
+    /**
+     * Adds a work slot at the end of the sequence. Timing is not calculated.
+     */
+    public void add(int partId, double duration) {
+        ensureCapacity(size + 1);
+        this.partId[size] = partId;
+        this.duration[size] = duration;
+        this.iniTime[size] = -1;
+        this.iniPeriod[size] = -1;
+        this.endTime[size] = -1;
+        this.endPeriod[size] = -1;
+        if (hashValid) {
+            hash ^= slotHash(partId, duration, size);
+        }
+        size++;
+        checkpointsValid = false;
+    }
+
+    /**
+     * Inserts a work slot in the given position, shifting the following ones to the right. Timing is not calculated.
+     */
+    public void insert(int pos, int partId, double duration) {
+        ensureCapacity(size + 1);
+        if (hashValid) {
+            hash ^= rangeHash(pos, size);
+        }
+        int length = size - pos;
+        System.arraycopy(this.partId, pos, this.partId, pos + 1, length);
+        System.arraycopy(this.duration, pos, this.duration, pos + 1, length);
+        System.arraycopy(this.iniTime, pos, this.iniTime, pos + 1, length);
+        System.arraycopy(this.endTime, pos, this.endTime, pos + 1, length);
+        System.arraycopy(this.iniPeriod, pos, this.iniPeriod, pos + 1, length);
+        System.arraycopy(this.endPeriod, pos, this.endPeriod, pos + 1, length);
+        this.partId[pos] = partId;
+        this.duration[pos] = duration;
+        size++;
+        if (hashValid) {
+            hash ^= rangeHash(pos, size);
+        }
+        checkpointsValid = false;
+    }
+
+    /**
+     * Removes the work slot in the given position, shifting the following ones to the left.
+     */
+    public void remove(int pos) {
+        if (hashValid) {
+            hash ^= rangeHash(pos, size);
+        }
+        int length = size - pos - 1;
+        System.arraycopy(this.partId, pos + 1, this.partId, pos, length);
+        System.arraycopy(this.duration, pos + 1, this.duration, pos, length);
+        System.arraycopy(this.iniTime, pos + 1, this.iniTime, pos, length);
+        System.arraycopy(this.endTime, pos + 1, this.endTime, pos, length);
+        System.arraycopy(this.iniPeriod, pos + 1, this.iniPeriod, pos, length);
+        System.arraycopy(this.endPeriod, pos + 1, this.endPeriod, pos, length);
+        size--;
+        if (hashValid) {
+            hash ^= rangeHash(pos, size);
+        }
+        checkpointsValid = false;
+    }
+
+    /**
+     * Moves the work slot in position "from" to position "to" in the same sequence, as the insert move does.
+     */
+    public void move(int from, int to) {
+        if (from == to) {
+            return;
+        }
+        // Only the positions between from and to change
+        int first = Math.min(from, to);
+        int last = Math.max(from, to) + 1;
+        if (hashValid) {
+            hash ^= rangeHash(first, last);
+        }
+        int auxPart = partId[from];
+        double auxDuration = duration[from];
+        double auxIniTime = iniTime[from];
+        double auxEndTime = endTime[from];
+        int auxIniPeriod = iniPeriod[from];
+        int auxEndPeriod = endPeriod[from];
+        int src = from < to ? from + 1 : to;
+        int dst = from < to ? from : to + 1;
+        int length = Math.abs(to - from);
+        System.arraycopy(this.partId, src, this.partId, dst, length);
+        System.arraycopy(this.duration, src, this.duration, dst, length);
+        System.arraycopy(this.iniTime, src, this.iniTime, dst, length);
+        System.arraycopy(this.endTime, src, this.endTime, dst, length);
+        System.arraycopy(this.iniPeriod, src, this.iniPeriod, dst, length);
+        System.arraycopy(this.endPeriod, src, this.endPeriod, dst, length);
+        partId[to] = auxPart;
+        duration[to] = auxDuration;
+        iniTime[to] = auxIniTime;
+        endTime[to] = auxEndTime;
+        iniPeriod[to] = auxIniPeriod;
+        endPeriod[to] = auxEndPeriod;
+        if (hashValid) {
+            hash ^= rangeHash(first, last);
+        }
+        checkpointsValid = false;
+    }
+
+    /**
+     * Exchanges the work slot in position i of schedule a with the work slot in position j of schedule b.
+     * Both schedules can be the same object.
+     */
+    public static void exchange(MachineSchedule a, int i, MachineSchedule b, int j) {
+        if (a.hashValid) {
+            a.hash ^= slotHash(a.partId[i], a.duration[i], i);
+        }
+        if (b.hashValid) {
+            b.hash ^= slotHash(b.partId[j], b.duration[j], j);
+        }
+        int auxPart = a.partId[i];
+        double auxDuration = a.duration[i];
+        double auxIniTime = a.iniTime[i];
+        double auxEndTime = a.endTime[i];
+        int auxIniPeriod = a.iniPeriod[i];
+        int auxEndPeriod = a.endPeriod[i];
+        a.partId[i] = b.partId[j];
+        a.duration[i] = b.duration[j];
+        a.iniTime[i] = b.iniTime[j];
+        a.endTime[i] = b.endTime[j];
+        a.iniPeriod[i] = b.iniPeriod[j];
+        a.endPeriod[i] = b.endPeriod[j];
+        b.partId[j] = auxPart;
+        b.duration[j] = auxDuration;
+        b.iniTime[j] = auxIniTime;
+        b.endTime[j] = auxEndTime;
+        b.iniPeriod[j] = auxIniPeriod;
+        b.endPeriod[j] = auxEndPeriod;
+        if (a.hashValid) {
+            a.hash ^= slotHash(a.partId[i], a.duration[i], i);
+        }
+        if (b.hashValid) {
+            b.hash ^= slotHash(b.partId[j], b.duration[j], j);
+        }
+        a.checkpointsValid = false;
+        b.checkpointsValid = false;
+    }
+
+    /**
+     * Moves the work slot in position i of schedule a to position j of schedule b (different schedules).
+     */
+    public static void transfer(MachineSchedule a, int i, MachineSchedule b, int j) {
+        int auxPart = a.partId[i];
+        double auxDuration = a.duration[i];
+        a.remove(i);
+        b.insert(j, auxPart, auxDuration);
+    }
+
+    /**
+     * Joins consecutive work slots that produce the same part in a single pass. Timing of the joined work slots
+     * spans from the first to the last one.
+     */
+    public void collapse() {
+        int last = -1;
+        for (int i = 0; i < size; i++) {
+            if (last >= 0 && partId[last] == partId[i]) {
+                duration[last] += duration[i];
+                endTime[last] = endTime[i];
+                endPeriod[last] = endPeriod[i];
+            } else {
+                last++;
+                partId[last] = partId[i];
+                duration[last] = duration[i];
+                iniTime[last] = iniTime[i];
+                endTime[last] = endTime[i];
+                iniPeriod[last] = iniPeriod[i];
+                endPeriod[last] = endPeriod[i];
+            }
+        }
+        size = last + 1;
+        hashValid = false;
+        checkpointsValid = false;
+    }
+
+    public void clear() {
+        size = 0;
+        hash = 0;
+        hashValid = true;
+        checkpointsValid = false;
+    }
+
+    /**
+     * Builds the simulation checkpoints of the sequence if the sequence has changed since they were calculated.
+     * It is synchronized since schedules can be shared between solutions evaluated in different threads, but a
+     * shared schedule is never modified.
+     *
+     * @param instance  Instance of the problem
+     * @param machineId Machine this sequence is assigned to
+     */
+    synchronized void ensureCheckpoints(CLSPInstance instance, int machineId) {
+        if (checkpointsValid) {
+            return;
+        }
+        if (checkpointPeriod == null || checkpointPeriod.length < size + 1) {
+            int length = size + (size >> 1) + 1;
+            checkpointPeriod = new int[length];
+            checkpointOffset = new double[length];
+            checkpointCapacity = new int[length];
+        }
+        if (simulatedIncrements == null) {
+            simulatedIncrements = new int[instance.getNumPeriods()][instance.getNumParts()];
+        } else {
+            for (int[] row : simulatedIncrements) {
+                Arrays.fill(row, 0);
+            }
+        }
+        var state = new CLSPSolution.SimulationState(instance, machineId);
+        for (int j = 0; j < size; j++) {
+            storeCheckpoint(j, state);
+            if (state.period < instance.getNumPeriods()) {
+                CLSPSolution.simulateWorkSlot(instance, simulatedIncrements, 1, this, j, size, machineId, state);
+            }
+        }
+        storeCheckpoint(size, state);
+        checkpointsValid = true;
+    }
+
+    private void storeCheckpoint(int j, CLSPSolution.SimulationState state) {
+        checkpointPeriod[j] = state.period;
+        checkpointOffset[j] = state.offset;
+        checkpointCapacity[j] = state.capacity;
+    }
+
+    /**
+     * Restores in the given state the checkpoint before work slot j. Checkpoints must be up to date.
+     */
+    void loadCheckpoint(int j, CLSPSolution.SimulationState state) {
+        state.period = checkpointPeriod[j];
+        state.offset = checkpointOffset[j];
+        state.capacity = checkpointCapacity[j];
+    }
+
+    /**
+     * Checks if the given state is the same as the checkpoint before work slot j. Checkpoints must be up to date.
+     */
+    boolean isCheckpoint(int j, CLSPSolution.SimulationState state) {
+        return checkpointPeriod[j] == state.period && checkpointOffset[j] == state.offset && checkpointCapacity[j] == state.capacity;
+    }
+
+    /**
+     * Production of each period and part of the whole sequence, before accumulating it. Checkpoints must be up to date.
+     */
+    int[][] getSimulatedIncrements() {
+        return simulatedIncrements;
+    }
+
+    /**
+     * Creates a WorkSlot object with the data of the given position
+     */
+    public WorkSlot toWorkSlot(int i) {
+        var ws = new WorkSlot(partId[i], duration[i]);
+        ws.setIniTime(iniTime[i]);
+        ws.setIniPeriod(iniPeriod[i]);
+        ws.setEndTime(endTime[i]);
+        ws.setEndPeriod(endPeriod[i]);
+        return ws;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("MachineSchedule{");
+        for (int i = 0; i < size; i++) {
+            sb.append(i == 0 ? "" : ", ").append(partId[i]).append(':').append(duration[i]);
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,116 @@
+package es.urjc.etsii.grafo.CLSP.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of the weekly production of machine sequences. It only depends on the machine and its sequence of
+ * parts and durations, and the local searches and the VNS evaluate the same sequences many times, for example every
+ * move between two machines that have not changed since the previous iteration.
+ * <p>
+ * Entries are found by the Zobrist hash of the sequence (see MachineSchedule.getHash), and keep a copy of the
+ * sequence, which is compared before using an entry, so a hash collision never returns a wrong profile. The cache is
+ * split in segments with their own lock, so it can be used by the threads of a parallel exploration.
+ */
+public class ProductionProfileCache {
+
+    private static final int SEGMENTS = 16;
+
+    // Approximate memory budget of the cached production matrices, in number of ints
+    private static final int CACHED_INTS = 8 * 1024 * 1024;
+
+    private final CLSPInstance instance;
+    private final Segment[] segments;
+
+    private record Key(int machineId, long hash) {
+    }
+
+    /**
+     * Accumulated weekly production (period, part) of a sequence. It is shared by every user of the cache, so it MUST
+     * NOT be modified.
+     */
+    public record Profile(int[] partIds, double[] durations, int[][] production) {
+    }
+
+    private static final class Segment extends LinkedHashMap<Key, Profile> {
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Profile> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    public ProductionProfileCache(CLSPInstance instance) {
+        this.instance = instance;
+        int entries = Math.max(SEGMENTS * 4, CACHED_INTS / Math.max(1, instance.getNumPeriods() * instance.getNumParts()));
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(entries / SEGMENTS);
+        }
+    }
+
+    /**
+     * Cached profile of a sequence
+     *
+     * @param machineId Machine of the sequence
+     * @param sequence  Sequence of work slots
+     * @return profile of the sequence, or null if it is not cached
+     */
+    public Profile get(int machineId, MachineSchedule sequence) {
+        long hash = sequence.getHash();
+        Segment segment = segments[(int) (hash >>> 60)];
+        Profile profile;
+        synchronized (segment) {
+            profile = segment.get(new Key(machineId, hash));
+        }
+        if (profile == null || !sequence.hasSequence(profile.partIds, profile.durations)) {
+            return null;
+        }
+        return profile;
+    }
+
+    /**
+     * Copies the cached weekly production of a sequence
+     *
+     * @param machineId  Machine of the sequence
+     * @param sequence   Sequence of work slots
+     * @param production Matrix (period, part) filled in with the accumulated weekly production if it is cached
+     * @return true if the sequence was cached
+     */
+    public boolean loadProduction(int machineId, MachineSchedule sequence, int[][] production) {
+        Profile profile = get(machineId, sequence);
+        if (profile == null) {
+            return false;
+        }
+        for (int period = 0; period < instance.getNumPeriods(); period++) {
+            System.arraycopy(profile.production[period], 0, production[period], 0, instance.getNumParts());
+        }
+        return true;
+    }
+
+    /**
+     * Stores the weekly production of a sequence
+     *
+     * @param machineId  Machine of the sequence
+     * @param sequence   Sequence of work slots
+     * @param production Accumulated weekly production (period, part) of the sequence, it is copied
+     */
+    public void store(int machineId, MachineSchedule sequence, int[][] production) {
+        int[][] copy = new int[instance.getNumPeriods()][];
+        for (int period = 0; period < instance.getNumPeriods(); period++) {
+            copy[period] = production[period].clone();
+        }
+        var profile = new Profile(sequence.copyPartIds(), sequence.copyDurations(), copy);
+        long hash = sequence.getHash();
+        Segment segment = segments[(int) (hash >>> 60)];
+        synchronized (segment) {
+            segment.put(new Key(machineId, hash), profile);
+        }
+    }
+}
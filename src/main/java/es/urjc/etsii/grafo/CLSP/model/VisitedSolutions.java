@@ -0,0 +1,76 @@
+package es.urjc.etsii.grafo.CLSP.model;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fingerprints (see CLSPSolution.getFingerprint) of the solutions already improved in a run, and of the local optima
+ * reached from them. It is shared by a solution and all the solutions cloned from it, so every solution of a run sees
+ * the same set, and it can be used by several threads at the same time.
+ * <p>
+ * Searches that run in parallel and must not depend on the order of the threads use a local set for each thread over
+ * a shared one (see VisitedSolutions(VisitedSolutions)). The shared set is only read while the threads run, and the
+ * local sets are merged into it with mergeIntoShared when the threads are synchronized.
+ */
+public class VisitedSolutions {
+
+    private final Set<Long> fingerprints = ConcurrentHashMap.newKeySet();
+    private final LongAdder skipped;
+    // Set merged by all the local sets, null if this set is not local
+    private final VisitedSolutions shared;
+
+    public VisitedSolutions() {
+        this.skipped = new LongAdder();
+        this.shared = null;
+    }
+
+    /**
+     * Creates a local set over a shared one. Skipped solutions are counted in the shared set.
+     *
+     * @param shared Set shared by all the local sets
+     */
+    public VisitedSolutions(VisitedSolutions shared) {
+        this.skipped = shared.skipped;
+        this.shared = shared;
+    }
+
+    /**
+     * Marks a solution as visited
+     *
+     * @param fingerprint Fingerprint of the solution
+     * @return true if the solution had not been visited before
+     */
+    public boolean add(long fingerprint) {
+        if (shared != null && shared.fingerprints.contains(fingerprint)) {
+            return false;
+        }
+        return fingerprints.add(fingerprint);
+    }
+
+    /**
+     * Moves the fingerprints of a local set to the shared set. It MUST NOT be called while another local set of the
+     * same shared set is in use.
+     */
+    public void mergeIntoShared() {
+        if (shared != null) {
+            shared.fingerprints.addAll(fingerprints);
+            fingerprints.clear();
+        }
+    }
+
+    /**
+     * Counts a visited solution that was not improved again
+     */
+    public void countSkipped() {
+        skipped.increment();
+    }
+
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    public int size() {
+        return fingerprints.size() + ((shared == null) ? 0 : shared.size());
+    }
+}
@@ -17,6 +17,8 @@ public abstract class CLSPBaseMove extends LazyMove<CLSPSolution, CLSPInstance>
     protected int finalPosition;
     protected double moveValue;
     protected double priorityImprovement;
+    // Generator of the next move when the neighborhood is explored lazily, null if moves are generated eagerly
+    protected MoveGenerator generator;
 
     /**
      * Move constructor
@@ -104,7 +106,18 @@ public abstract class CLSPBaseMove extends LazyMove<CLSPSolution, CLSPInstance>
      */
     @Override
     public LazyMove<CLSPSolution, CLSPInstance> next(CLSPSolution solution) {
-        throw new UnsupportedOperationException("Not implemented");
+        if (generator == null)
+            throw new UnsupportedOperationException("Move was generated eagerly");
+        return generator.next(solution, this);
+    }
+
+    /**
+     * Sets the generator used to obtain the next move of a lazy exploration
+     *
+     * @param generator generator of the neighborhood that created this move
+     */
+    public void setGenerator(MoveGenerator generator) {
+        this.generator = generator;
     }
 
     /**
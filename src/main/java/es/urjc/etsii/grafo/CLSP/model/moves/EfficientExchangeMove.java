@@ -1,10 +1,12 @@
 package es.urjc.etsii.grafo.CLSP.model.moves;
 
 import es.urjc.etsii.grafo.CLSP.model.CLSPSolution;
+import es.urjc.etsii.grafo.CLSP.model.MachineSchedule;
 
 public class EfficientExchangeMove extends ExchangeMove {
 
-    protected int [][][] machineWeeklyProducedParts;
+    protected int[][] iniMachineWeeklyProducedParts;
+    protected int[][] endMachineWeeklyProducedParts;
     protected double changeoverTime;
     protected double shortage;
 
@@ -19,26 +21,72 @@ public class EfficientExchangeMove extends ExchangeMove {
      */
     public EfficientExchangeMove(CLSPSolution solution, int initialMachineId, int initialPosition, int finalMachineId, int finalPosition, double moveValue) {
         super(solution, initialMachineId, initialPosition, finalMachineId, finalPosition, moveValue);
-        this.machineWeeklyProducedParts = new int[solution.getInstance().getNumMachines()][solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
+        this.iniMachineWeeklyProducedParts = null;
+        this.endMachineWeeklyProducedParts = null;
     }
 
-    public EfficientExchangeMove(CLSPSolution solution, int initialMachineId, int initialPosition, int finalMachineId, int finalPosition, double moveValue, int[][][] newWeeklyProducedParts, double changeoverTime, double shortage) {
+    /**
+     * Creates a move that only stores its result. The weekly production of the machines is calculated again when
+     * the move is executed, so candidate moves do not need their own copy of it.
+     */
+    public EfficientExchangeMove(CLSPSolution solution, int initialMachineId, int initialPosition, int finalMachineId, int finalPosition, double moveValue, double changeoverTime, double shortage) {
         this(solution, initialMachineId, initialPosition, finalMachineId, finalPosition, moveValue);
-        for (int m = 0; m < solution.getInstance().getNumMachines(); m++) {
-            for (int p = 0; p < solution.getInstance().getNumPeriods(); p++) {
-                if (solution.getInstance().getNumParts() >= 0)
-                    System.arraycopy(newWeeklyProducedParts[m][p], 0, this.machineWeeklyProducedParts[m][p], 0, solution.getInstance().getNumParts());
-            }
-        }
         this.changeoverTime = changeoverTime;
         this.shortage = shortage;
     }
 
+    /**
+     * Calculates the work slots and the weekly produced parts of the machines affected by an exchange move, without
+     * modifying the solution. The given structures are overwritten, so they can be reused between evaluations.
+     *
+     * @param solution Current solution
+     * @param mIni Initial machine
+     * @param pIni Initial position
+     * @param mEnd Final machine
+     * @param pEnd Final position
+     * @param afterMoveIni Filled in with the work slots of the initial machine after the move
+     * @param afterMoveEnd Filled in with the work slots of the final machine after the move, not used if it is the
+     *                     same machine
+     * @param iniMachineWeeklyProducedParts Filled in with the weekly produced parts of the initial machine
+     * @param endMachineWeeklyProducedParts Filled in with the weekly produced parts of the final machine, not used if
+     *                                      it is the same machine
+     */
+    public static void calculateMove(CLSPSolution solution, int mIni, int pIni, int mEnd, int pEnd, MachineSchedule afterMoveIni, MachineSchedule afterMoveEnd, int[][] iniMachineWeeklyProducedParts, int[][] endMachineWeeklyProducedParts) {
+        afterMoveIni.copyFrom(solution.getSchedule(mIni));
+        if (mIni == mEnd) {
+            // Move implemented as in "performMove" in ExchangeMove
+            MachineSchedule.exchange(afterMoveIni, pIni, afterMoveIni, pEnd);
+            // Work slots before and after the exchanged range do not change
+            CLSPSolution.calculateMachineWeeklyProducedParts(solution.getInstance(), iniMachineWeeklyProducedParts, solution.getSchedule(mIni), afterMoveIni, Math.min(pIni, pEnd), Math.max(pIni, pEnd) + 1, 0, mIni);
+        } else {
+            afterMoveEnd.copyFrom(solution.getSchedule(mEnd));
+            MachineSchedule.exchange(afterMoveIni, pIni, afterMoveEnd, pEnd);
+            CLSPSolution.calculateMachineWeeklyProducedParts(solution.getInstance(), iniMachineWeeklyProducedParts, solution.getSchedule(mIni), afterMoveIni, pIni, pIni + 1, 0, mIni);
+            CLSPSolution.calculateMachineWeeklyProducedParts(solution.getInstance(), endMachineWeeklyProducedParts, solution.getSchedule(mEnd), afterMoveEnd, pEnd, pEnd + 1, 0, mEnd);
+        }
+    }
+
+    public double getChangeoverTime() {
+        return changeoverTime;
+    }
+
+    public double getShortage() {
+        return shortage;
+    }
+
     @Override
     protected boolean _execute(CLSPSolution solution) {
+        if (iniMachineWeeklyProducedParts == null) {
+            // Only the executed move gets its own copy of the weekly production
+            int numPeriods = solution.getInstance().getNumPeriods();
+            int numParts = solution.getInstance().getNumParts();
+            iniMachineWeeklyProducedParts = new int[numPeriods][numParts];
+            endMachineWeeklyProducedParts = (initialMachineId == finalMachineId) ? iniMachineWeeklyProducedParts : new int[numPeriods][numParts];
+            calculateMove(solution, initialMachineId, initialPosition, finalMachineId, finalPosition, new MachineSchedule(0), new MachineSchedule(0), iniMachineWeeklyProducedParts, endMachineWeeklyProducedParts);
+        }
         boolean result = performMove(solution);
 
-        solution.updateDataStructures(initialMachineId,initialPosition,finalMachineId,finalPosition,changeoverTime,machineWeeklyProducedParts, shortage);
+        solution.updateDataStructuresOptimized(initialMachineId,initialPosition,finalMachineId,finalPosition,changeoverTime,shortage,iniMachineWeeklyProducedParts,endMachineWeeklyProducedParts);
 
         // Efficient score calculation
         solution.setScore(solution.getScore() + this.moveValue);
@@ -1,6 +1,7 @@
 package es.urjc.etsii.grafo.CLSP.model.moves;
 
 import es.urjc.etsii.grafo.CLSP.model.CLSPSolution;
+import es.urjc.etsii.grafo.CLSP.model.MachineSchedule;
 
 public class EfficientInsertMove extends InsertMove {
 
@@ -24,12 +25,62 @@ public class EfficientInsertMove extends InsertMove {
         this.shortage = shortage;
     }
 
+    /**
+     * Creates a move that only stores its result. The weekly production of the machines is calculated again when
+     * the move is executed, so candidate moves do not need their own copy of it.
+     */
+    public EfficientInsertMove(CLSPSolution solution, int initialMachineId, int initialPosition, int finalMachineId, int finalPosition, double moveValue, double changeoverTime, double shortage) {
+        this(solution, initialMachineId, initialPosition, finalMachineId, finalPosition, moveValue);
+        this.changeoverTime = changeoverTime;
+        this.shortage = shortage;
+    }
+
+    /**
+     * Calculates the work slots and the weekly produced parts of the machines affected by an insert move, without
+     * modifying the solution. The given structures are overwritten, so they can be reused between evaluations.
+     *
+     * @param solution Current solution
+     * @param mIni Initial machine
+     * @param pIni Initial position
+     * @param mEnd Final machine
+     * @param pEnd Final position
+     * @param afterMoveIni Filled in with the work slots of the initial machine after the move
+     * @param afterMoveEnd Filled in with the work slots of the final machine after the move, not used if it is the
+     *                     same machine
+     * @param iniMachineWeeklyProducedParts Filled in with the weekly produced parts of the initial machine
+     * @param endMachineWeeklyProducedParts Filled in with the weekly produced parts of the final machine, not used if
+     *                                      it is the same machine
+     */
+    public static void calculateMove(CLSPSolution solution, int mIni, int pIni, int mEnd, int pEnd, MachineSchedule afterMoveIni, MachineSchedule afterMoveEnd, int[][] iniMachineWeeklyProducedParts, int[][] endMachineWeeklyProducedParts) {
+        afterMoveIni.copyFrom(solution.getSchedule(mIni));
+        if (mIni == mEnd) {
+            // Move implemented as in "performMove" in InsertMove
+            afterMoveIni.move(pIni, pEnd);
+            // Work slots before and after the moved range do not change
+            CLSPSolution.calculateMachineWeeklyProducedParts(solution.getInstance(), iniMachineWeeklyProducedParts, solution.getSchedule(mIni), afterMoveIni, Math.min(pIni, pEnd), Math.max(pIni, pEnd) + 1, 0, mIni);
+        } else {
+            afterMoveEnd.copyFrom(solution.getSchedule(mEnd));
+            MachineSchedule.transfer(afterMoveIni, pIni, afterMoveEnd, pEnd);
+            // The tail of the initial machine moves one position to the left, and the tail of the end machine to the right
+            CLSPSolution.calculateMachineWeeklyProducedParts(solution.getInstance(), iniMachineWeeklyProducedParts, solution.getSchedule(mIni), afterMoveIni, pIni, pIni, 1, mIni);
+            CLSPSolution.calculateMachineWeeklyProducedParts(solution.getInstance(), endMachineWeeklyProducedParts, solution.getSchedule(mEnd), afterMoveEnd, pEnd, pEnd + 1, -1, mEnd);
+        }
+    }
+
     public double getChangeoverTime() {
         return changeoverTime;
     }
 
     @Override
     protected boolean _execute(CLSPSolution solution) {
+        if (iniMachineWeeklyProducedParts == null) {
+            // Only the executed move gets its own copy of the weekly production
+            int numPeriods = solution.getInstance().getNumPeriods();
+            int numParts = solution.getInstance().getNumParts();
+            iniMachineWeeklyProducedParts = new int[numPeriods][numParts];
+            endMachineWeeklyProducedParts = (initialMachineId == finalMachineId) ? iniMachineWeeklyProducedParts : new int[numPeriods][numParts];
+            calculateMove(solution, initialMachineId, initialPosition, finalMachineId, finalPosition, new MachineSchedule(0), new MachineSchedule(0), iniMachineWeeklyProducedParts, endMachineWeeklyProducedParts);
+        }
         boolean result = performMove(solution);
 
         solution.updateDataStructuresOptimized(initialMachineId,initialPosition,finalMachineId,finalPosition,changeoverTime,shortage,iniMachineWeeklyProducedParts,endMachineWeeklyProducedParts);
@@ -1,7 +1,7 @@
 package es.urjc.etsii.grafo.CLSP.model.moves;
 
 import es.urjc.etsii.grafo.CLSP.model.CLSPSolution;
-import es.urjc.etsii.grafo.CLSP.model.WorkSlot;
+import es.urjc.etsii.grafo.CLSP.model.MachineSchedule;
 
 public class ExchangeMove extends CLSPBaseMove {
     /**
@@ -26,6 +26,8 @@ public class ExchangeMove extends CLSPBaseMove {
         boolean result = performMove(solution);
 
         solution.setScore(solution.recalculateScore());
+        // Timing is not updated incrementally, so the don't look bits are not valid any more
+        solution.clearDontLook();
 
         return result;
     }
@@ -34,11 +36,8 @@ public class ExchangeMove extends CLSPBaseMove {
         if ((initialMachineId == finalMachineId) && (initialPosition == finalPosition)) {
             return true;
         }
-        WorkSlot aux = solution.getSolutionData()[initialMachineId][initialPosition];
-
         // Exchange the workslots
-        solution.getSolutionData()[initialMachineId][initialPosition] = solution.getSolutionData()[finalMachineId][finalPosition];
-        solution.getSolutionData()[finalMachineId][finalPosition] = aux;
+        MachineSchedule.exchange(solution.getWritableSchedule(initialMachineId), initialPosition, solution.getWritableSchedule(finalMachineId), finalPosition);
         return true;
     }
 
@@ -1,7 +1,7 @@
 package es.urjc.etsii.grafo.CLSP.model.moves;
 
 import es.urjc.etsii.grafo.CLSP.model.CLSPSolution;
-import es.urjc.etsii.grafo.CLSP.model.WorkSlot;
+import es.urjc.etsii.grafo.CLSP.model.MachineSchedule;
 
 public class InsertMove extends CLSPBaseMove {
     /**
@@ -31,6 +31,8 @@ public class InsertMove extends CLSPBaseMove {
 
         // Inefficient score recalculation
         solution.setScore(solution.recalculateScore());
+        // Timing is not updated incrementally, so the don't look bits are not valid any more
+        solution.clearDontLook();
 
         return result;
     }
@@ -39,30 +41,13 @@ public class InsertMove extends CLSPBaseMove {
         if ((initialMachineId == finalMachineId) && (initialPosition == finalPosition)) {
             return true;
         }
-        WorkSlot aux = solution.getSolutionData()[initialMachineId][initialPosition];
         // If the machine is the same, the move is simpler
         if (initialMachineId == finalMachineId) {
-            if (initialPosition < finalPosition) {
-                for (int i = initialPosition; i < finalPosition; i++) {
-                    solution.getSolutionData()[initialMachineId][i] = solution.getSolutionData()[initialMachineId][i + 1];
-                }
-            } else {
-                for (int i = initialPosition; i > finalPosition; i--) {
-                    solution.getSolutionData()[initialMachineId][i] = solution.getSolutionData()[initialMachineId][i - 1];
-                }
-            }
+            solution.getWritableSchedule(initialMachineId).move(initialPosition, finalPosition);
         } else {
             // If the machine is different, we have to move the workslot to the new machine updating the workslot count
-            for (int i = initialPosition; i < solution.getNumberOfMachineWorkSlots()[initialMachineId] - 1; i++) {
-                solution.getSolutionData()[initialMachineId][i] = solution.getSolutionData()[initialMachineId][i + 1];
-            }
-            solution.getNumberOfMachineWorkSlots()[initialMachineId]--;
-            for (int i = solution.getNumberOfMachineWorkSlots()[finalMachineId]; i > finalPosition; i--) {
-                solution.getSolutionData()[finalMachineId][i] = solution.getSolutionData()[finalMachineId][i - 1];
-            }
-            solution.getNumberOfMachineWorkSlots()[finalMachineId]++;
+            MachineSchedule.transfer(solution.getWritableSchedule(initialMachineId), initialPosition, solution.getWritableSchedule(finalMachineId), finalPosition);
         }
-        solution.getSolutionData()[finalMachineId][finalPosition] = aux;
 
         return true;
     }
@@ -0,0 +1,20 @@
+package es.urjc.etsii.grafo.CLSP.model.moves;
+
+import es.urjc.etsii.grafo.CLSP.model.CLSPSolution;
+
+/**
+ * Generates the moves of a neighborhood on demand, one after another. Used by lazy moves to obtain the next move of
+ * the sequence.
+ */
+@FunctionalInterface
+public interface MoveGenerator {
+
+    /**
+     * Generates the move that follows the given one
+     *
+     * @param solution solution used to generate the previous move
+     * @param previous previous move of the sequence, null to generate the first one
+     * @return next move of the sequence, or null if there are no more moves
+     */
+    CLSPBaseMove next(CLSPSolution solution, CLSPBaseMove previous);
+}
@@ -7,6 +7,7 @@ import es.urjc.etsii.grafo.solution.neighborhood.ExploreResult;
 import es.urjc.etsii.grafo.solution.neighborhood.RandomizableNeighborhood;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,29 +23,14 @@ public abstract class BasicNeighborhood<M extends CLSPBaseMove> extends Randomiz
     protected List<Coordinate> generateMoves (CLSPSolution solution, boolean isExchange) {
         List<Coordinate> list = new ArrayList<>();
         for (int machineIni = 0; machineIni < solution.getInstance().getNumMachines(); machineIni++) {
-            for (int posIni = 0; posIni < solution.getNumberOfMachineWorkSlots()[machineIni]; posIni++) {
-                // Moves can be made in the same machine.
-                for (int machineEnd = 0; machineEnd < solution.getInstance().getNumMachines(); machineEnd++) {
+            for (int posIni = 0; posIni < solution.getNumberOfMachineWorkSlots(machineIni); posIni++) {
+                // Moves can be made in the same machine. Only the machines able to produce the part are destinations.
+                for (int machineEnd : solution.getInstance().getCapableMachines(solution.getSchedule(machineIni).getPartId(posIni))) {
                     // Insertion must allow to include a workslot at the end of the machine.
-                    for (int posEnd = 0; posEnd <= solution.getNumberOfMachineWorkSlots()[machineEnd]; posEnd++) {
-                        // Moves in different places.
-                        if ((machineIni == machineEnd) && (posIni == posEnd)) {
-                            continue;
+                    for (int posEnd = 0; posEnd <= solution.getNumberOfMachineWorkSlots(machineEnd); posEnd++) {
+                        if (isValidMove(solution, machineIni, posIni, machineEnd, posEnd, isExchange)) {
+                            list.add(new Coordinate(machineIni, posIni, machineEnd, posEnd));
                         }
-                        // If the destination machine is not able to produce the part, the move is not possible.
-                        if (solution.getInstance().productionRate[solution.getSolutionData()[machineIni][posIni].getPartId()][machineEnd] == 0) {
-                            continue;
-                        }
-                        // Exchange is not possible after the last slot of the machine.
-                        // No insert after the last slot of the machine is possible in the same machine.
-                        if ((posEnd == solution.getNumberOfMachineWorkSlots()[machineEnd]) && ((machineIni == machineEnd) || isExchange)) {
-                            continue;
-                        }
-                        // Exchange must check that the initial machine can produce the part from the final machine.
-                        if (isExchange && (solution.getInstance().productionRate[solution.getSolutionData()[machineEnd][posEnd].getPartId()][machineIni] == 0)) {
-                            continue;
-                        }
-                        list.add(new Coordinate(machineIni, posIni, machineEnd, posEnd));
                     }
                 }
             }
@@ -52,6 +38,114 @@ public abstract class BasicNeighborhood<M extends CLSPBaseMove> extends Randomiz
         return list;
     }
 
+    /**
+     * Generates the coordinate that follows the given one, in the same order as {@link #generateMoves}, so
+     * neighborhoods can be explored lazily without building the list of coordinates.
+     *
+     * @param solution current solution
+     * @param c previous coordinate, or null to obtain the first one
+     * @param isExchange true for exchange moves, false for insert moves
+     * @return next coordinate, or null if there are no more coordinates
+     */
+    protected Coordinate nextCoordinate(CLSPSolution solution, Coordinate c, boolean isExchange) {
+        var instance = solution.getInstance();
+        int numMachines = instance.getNumMachines();
+        // The destination is the index of the machine in the capable machines of the initial part
+        int machineIni = 0, posIni = 0, endIndex = 0, posEnd = -1;
+        if (c != null) {
+            machineIni = c.machineIni();
+            posIni = c.positionIni();
+            // Capable machines are sorted by id
+            endIndex = Arrays.binarySearch(instance.getCapableMachines(solution.getSchedule(machineIni).getPartId(posIni)), c.machineEnd());
+            posEnd = c.positionEnd();
+        }
+        while (machineIni < numMachines) {
+            if (posIni >= solution.getNumberOfMachineWorkSlots(machineIni)) {
+                posIni = 0;
+                machineIni++;
+                // Restart the destination before checking the new initial machine
+                endIndex = 0;
+                posEnd = -1;
+                continue;
+            }
+            int[] capableMachines = instance.getCapableMachines(solution.getSchedule(machineIni).getPartId(posIni));
+            posEnd++;
+            if (endIndex < capableMachines.length && posEnd > solution.getNumberOfMachineWorkSlots(capableMachines[endIndex])) {
+                posEnd = 0;
+                endIndex++;
+            }
+            if (endIndex >= capableMachines.length) {
+                endIndex = 0;
+                posEnd = -1;
+                posIni++;
+                continue;
+            }
+            if (isValidMove(solution, machineIni, posIni, capableMachines[endIndex], posEnd, isExchange)) {
+                return new Coordinate(machineIni, posIni, capableMachines[endIndex], posEnd);
+            }
+        }
+        return null;
+    }
+
+    protected boolean isValidMove(CLSPSolution solution, int machineIni, int posIni, int machineEnd, int posEnd, boolean isExchange) {
+        // Moves in different places.
+        if ((machineIni == machineEnd) && (posIni == posEnd)) {
+            return false;
+        }
+        // If the destination machine is not able to produce the part, the move is not possible.
+        if (solution.getInstance().productionRate[solution.getSchedule(machineIni).getPartId(posIni)][machineEnd] == 0) {
+            return false;
+        }
+        // Exchange is not possible after the last slot of the machine.
+        // No insert after the last slot of the machine is possible in the same machine.
+        if ((posEnd == solution.getNumberOfMachineWorkSlots(machineEnd)) && ((machineIni == machineEnd) || isExchange)) {
+            return false;
+        }
+        // Exchange must check that the initial machine can produce the part from the final machine.
+        return !isExchange || (solution.getInstance().productionRate[solution.getSchedule(machineEnd).getPartId(posEnd)][machineIni] != 0);
+    }
+
+    /**
+     * Explores the neighborhood in parallel. Each initial work slot (machine and position) is explored as an
+     * independent task in the common ForkJoinPool, keeping its own best moves. The results are then merged in the
+     * order of the sequential exploration, so the same moves are returned in the same order, whatever the number of
+     * threads. Evaluations use the workspace of each worker thread.
+     *
+     * @param solution current solution
+     * @param maxMoves maximum number of moves to return, all the moves if zero
+     * @param explorer explores the moves of one initial work slot
+     * @return best moves of the neighborhood
+     */
+    protected BestMoves<M> exploreInParallel(CLSPSolution solution, int maxMoves, SourceExplorer<M> explorer) {
+        List<int[]> sources = new ArrayList<>();
+        for (int machineIni = 0; machineIni < solution.getInstance().getNumMachines(); machineIni++) {
+            for (int posIni = 0; posIni < solution.getNumberOfMachineWorkSlots(machineIni); posIni++) {
+                sources.add(new int[]{machineIni, posIni});
+            }
+        }
+
+        // The stream is ordered, so the partial results are collected in the order of the sources
+        List<BestMoves<M>> partial = sources.parallelStream().map(source -> {
+            BestMoves<M> sourceMoves = new BestMoves<>(maxMoves);
+            explorer.explore(solution, source[0], source[1], sourceMoves);
+            return sourceMoves;
+        }).toList();
+
+        BestMoves<M> bestMoves = new BestMoves<>(maxMoves);
+        for (BestMoves<M> sourceMoves : partial) {
+            bestMoves.addAll(sourceMoves);
+        }
+        return bestMoves;
+    }
+
+    /**
+     * Explores the moves of the work slot placed in a given position of a given machine
+     */
+    @FunctionalInterface
+    protected interface SourceExplorer<M extends CLSPBaseMove> {
+        void explore(CLSPSolution solution, int machineIni, int posIni, BestMoves<M> bestMoves);
+    }
+
     public record Coordinate (int machineIni, int positionIni, int machineEnd, int positionEnd) implements Comparable<Coordinate>{
         @Override
         public int compareTo(Coordinate o) {
@@ -0,0 +1,94 @@
+package es.urjc.etsii.grafo.CLSP.model.neighborhoods;
+
+import es.urjc.etsii.grafo.CLSP.model.moves.CLSPBaseMove;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the best moves found while exploring a neighborhood, so the neighborhood does not need to store every
+ * generated move. Moves are sorted by move value (minimization) and, for the same value, by the order in which they
+ * were added, so the first best move of the exploration is always the first one of the list.
+ *
+ * @param <M> type of the move
+ */
+public class BestMoves<M extends CLSPBaseMove> {
+
+    private final int maxMoves;
+    private final List<M> all;
+    private final CLSPBaseMove[] best;
+    private int size;
+
+    /**
+     * Creates a new collector of moves
+     *
+     * @param maxMoves maximum number of moves to keep. If it is zero or negative, all moves are kept in order.
+     */
+    public BestMoves(int maxMoves) {
+        this.maxMoves = maxMoves;
+        this.all = maxMoves <= 0 ? new ArrayList<>() : null;
+        this.best = maxMoves <= 0 ? null : new CLSPBaseMove[maxMoves];
+        this.size = 0;
+    }
+
+    /**
+     * Adds a move. If the maximum number of moves has been reached, the move is only kept if it is strictly better
+     * than the worst stored move, which is discarded.
+     *
+     * @param move move to add
+     */
+    public void add(M move) {
+        if (all != null) {
+            all.add(move);
+            return;
+        }
+        double value = move.getMoveValue();
+        if (size == maxMoves && value >= best[size - 1].getMoveValue())
+            return;
+        // Insertion after the moves with the same or lower value
+        int pos = (size == maxMoves) ? size - 1 : size;
+        while (pos > 0 && best[pos - 1].getMoveValue() > value) {
+            best[pos] = best[pos - 1];
+            pos--;
+        }
+        best[pos] = move;
+        if (size < maxMoves)
+            size++;
+    }
+
+    /**
+     * Adds all the moves kept by other collector, in their order
+     *
+     * @param other collector of moves
+     */
+    public void addAll(BestMoves<M> other) {
+        for (M move : other.getMoves()) {
+            add(move);
+        }
+    }
+
+    /**
+     * Value of the worst move that is currently kept, used to discard moves before evaluating them completely.
+     *
+     * @return value of the worst kept move, or positive infinity while there is room for more moves
+     */
+    public double threshold() {
+        if (all != null || size < maxMoves)
+            return Double.POSITIVE_INFINITY;
+        return best[size - 1].getMoveValue();
+    }
+
+    /**
+     * Moves kept by the collector
+     *
+     * @return list of moves, sorted by move value if the number of moves is limited, or in the order they were
+     * added otherwise
+     */
+    @SuppressWarnings("unchecked")
+    public List<M> getMoves() {
+        if (all != null)
+            return all;
+        return (List<M>) new ArrayList<>(Arrays.asList(best).subList(0, size));
+    }
+}
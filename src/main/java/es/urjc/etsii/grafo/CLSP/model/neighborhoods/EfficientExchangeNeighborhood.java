@@ -1,19 +1,163 @@
 package es.urjc.etsii.grafo.CLSP.model.neighborhoods;
 
 import es.urjc.etsii.grafo.CLSP.model.*;
+import es.urjc.etsii.grafo.CLSP.model.moves.CLSPBaseMove;
 import es.urjc.etsii.grafo.CLSP.model.moves.EfficientExchangeMove;
 import es.urjc.etsii.grafo.CLSP.model.moves.ExchangeMove;
 import es.urjc.etsii.grafo.solution.neighborhood.ExploreResult;
 import es.urjc.etsii.grafo.util.random.RandomManager;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.random.RandomGenerator;
 
 public class EfficientExchangeNeighborhood extends ExchangeNeighborhood {
 
+    // Draws of a random move before choosing it from the full list of moves
+    private static final int MAX_RANDOM_ATTEMPTS = 100;
+
+    // Maximum number of moves returned by explore, all the moves if zero
+    private final int maxMoves;
+    // Moves generated on demand, one after another
+    private final boolean lazy;
+    // Initial work slots explored in parallel
+    private final boolean parallel;
+
+    /**
+     * Neighborhood that returns all the moves
+     */
+    public EfficientExchangeNeighborhood() {
+        this(0);
+    }
+
+    /**
+     * Neighborhood that only keeps the best moves while exploring, so the memory used does not depend on the size of
+     * the neighborhood. Use 1 for best improvement local searches.
+     *
+     * @param maxMoves maximum number of moves returned by explore, all the moves if zero
+     */
+    public EfficientExchangeNeighborhood(int maxMoves) {
+        this(maxMoves, false);
+    }
+
+    /**
+     * Neighborhood that only keeps the best moves, and can explore the initial work slots in parallel. The parallel
+     * exploration returns the same moves as the sequential one.
+     *
+     * @param maxMoves maximum number of moves returned by explore, all the moves if zero
+     * @param parallel true to explore in parallel
+     */
+    public EfficientExchangeNeighborhood(int maxMoves, boolean parallel) {
+        this.maxMoves = maxMoves;
+        this.lazy = false;
+        this.parallel = parallel;
+    }
+
+    /**
+     * Neighborhood that, if lazy, generates every move on demand in the same order as the eager exploration, so a
+     * first improvement local search stops evaluating moves as soon as it finds an improving one.
+     *
+     * @param lazy true to generate the moves lazily, false to return all the moves
+     */
+    public EfficientExchangeNeighborhood(boolean lazy) {
+        this.maxMoves = 0;
+        this.lazy = lazy;
+        this.parallel = false;
+    }
+
+    /**
+     * Generates the next exchange move of a lazy exploration
+     *
+     * @param solution current solution
+     * @param previous previous move, or null to generate the first one
+     * @return next move, or null if there are no more moves
+     */
+    private ExchangeMove nextMove(CLSPSolution solution, CLSPBaseMove previous) {
+        Coordinate c = (previous == null) ? null : new Coordinate(previous.getInitialMachineId(), previous.getInitialPosition(), previous.getFinalMachineId(), previous.getFinalPosition());
+        ExchangeMove move = null;
+        while (move == null) {
+            c = nextCoordinate(solution, c, true);
+            if (c == null)
+                return null;
+            // The move can be null if it is not possible
+            move = generateMove(solution, c);
+        }
+        move.setGenerator(this::nextMove);
+        return move;
+    }
+
+    /**
+     * Random exchange move, used by the shake of the VNS. Instead of generating every coordinate of the
+     * neighborhood, the initial work slot is drawn among all the work slots, and the final work slot among the work
+     * slots of the machines able to produce the initial part. Only the drawn move is evaluated, so the cost does not
+     * depend on the size of the solution. Draws that are not valid moves are repeated, and if no valid move is found
+     * after {@link #MAX_RANDOM_ATTEMPTS} draws, the move is chosen from the full list of moves.
+     *
+     * @param solution current solution
+     * @return random exchange move, or empty if there are no exchange moves
+     */
     @Override
     public Optional<ExchangeMove> getRandomMove(CLSPSolution solution) {
+        return getRandomMove(solution, RandomManager.getRandom());
+    }
+
+    /**
+     * Random exchange move, drawn with the given random generator instead of the one of the current thread.
+     *
+     * @param solution current solution
+     * @param random random generator
+     * @return random exchange move, or empty if there are no exchange moves
+     */
+    public Optional<ExchangeMove> getRandomMove(CLSPSolution solution, RandomGenerator random) {
+        var instance = solution.getInstance();
+
+        int totalWorkSlots = 0;
+        for (int machine = 0; machine < instance.getNumMachines(); machine++) {
+            totalWorkSlots += solution.getNumberOfMachineWorkSlots(machine);
+        }
+        if (totalWorkSlots == 0) {
+            return Optional.empty();
+        }
+
+        for (int attempt = 0; attempt < MAX_RANDOM_ATTEMPTS; attempt++) {
+            // Initial work slot
+            int mIni = 0;
+            int pIni = random.nextInt(totalWorkSlots);
+            while (pIni >= solution.getNumberOfMachineWorkSlots(mIni)) {
+                pIni -= solution.getNumberOfMachineWorkSlots(mIni);
+                mIni++;
+            }
+
+            // Final work slot, in a machine able to produce the initial part
+            int[] machines = instance.getCapableMachines(solution.getSchedule(mIni).getPartId(pIni));
+            int candidates = 0;
+            for (int machine : machines) {
+                candidates += solution.getNumberOfMachineWorkSlots(machine);
+            }
+            if (candidates == 0) {
+                continue;
+            }
+            int i = 0;
+            int pEnd = random.nextInt(candidates);
+            while (pEnd >= solution.getNumberOfMachineWorkSlots(machines[i])) {
+                pEnd -= solution.getNumberOfMachineWorkSlots(machines[i]);
+                i++;
+            }
+            int mEnd = machines[i];
+
+            if (isValidMove(solution, mIni, pIni, mEnd, pEnd, true)) {
+                // The move can be null if it is not possible
+                ExchangeMove move = generateMove(solution, new Coordinate(mIni, pIni, mEnd, pEnd));
+                if (move != null) {
+                    return Optional.of(move);
+                }
+            }
+        }
+
+        return getRandomMoveFromList(solution, random);
+    }
+
+    private Optional<ExchangeMove> getRandomMoveFromList(CLSPSolution solution, RandomGenerator random) {
         List<Coordinate> moves = generateMoves(solution,true);
         if (moves.isEmpty()) {
             return Optional.empty();
@@ -22,7 +166,7 @@ public class EfficientExchangeNeighborhood extends ExchangeNeighborhood {
         ExchangeMove move;
         do {
             // Get random coordinate from the list:
-            Coordinate c = moves.get(RandomManager.getRandom().nextInt(moves.size()));
+            Coordinate c = moves.get(random.nextInt(moves.size()));
             // The move can be null if it is not possible
             move = generateMove(solution, c);
         } while (move == null);
@@ -32,16 +176,47 @@ public class EfficientExchangeNeighborhood extends ExchangeNeighborhood {
 
 
     public ExploreResult<ExchangeMove, CLSPSolution, CLSPInstance> explore(CLSPSolution solution) {
-        List<ExchangeMove> list = new ArrayList<>();
+        if (lazy) {
+            ExchangeMove first = nextMove(solution, null);
+            return (first == null) ? ExploreResult.empty() : ExploreResult.fromLazyMove(solution, first);
+        }
+
+        if (parallel) {
+            var screening = new MoveScreening(solution);
+            return ExploreResult.fromList(exploreInParallel(solution, maxMoves, (s, machineIni, posIni, moves) -> exploreSource(s, screening, machineIni, posIni, moves)).getMoves());
+        }
+
+        BestMoves<ExchangeMove> bestMoves = new BestMoves<>(maxMoves);
+        var screening = new MoveScreening(solution);
         List<Coordinate> moves = generateMoves(solution,true);
 
         for (Coordinate c : moves) {
+            // Screening: skip the moves that cannot be better than the kept moves
+            if (screening.exchangeLowerBound(c.machineIni(), c.positionIni(), c.machineEnd(), c.positionEnd()) >= bestMoves.threshold())
+                continue;
             var move = generateMove(solution, c);
             if (move != null)
-                list.add(move);
+                bestMoves.add(move);
         }
 
-        return ExploreResult.fromList(list);
+        return ExploreResult.fromList(bestMoves.getMoves());
+    }
+
+    /**
+     * Explores the exchange moves of the work slot in a given position of a given machine
+     */
+    private void exploreSource(CLSPSolution solution, MoveScreening screening, int machineIni, int posIni, BestMoves<ExchangeMove> bestMoves) {
+        // Only the machines able to produce the part are destinations
+        for (int machineEnd : solution.getInstance().getCapableMachines(solution.getSchedule(machineIni).getPartId(posIni))) {
+            for (int posEnd = 0; posEnd < solution.getNumberOfMachineWorkSlots(machineEnd); posEnd++) {
+                if (isValidMove(solution, machineIni, posIni, machineEnd, posEnd, true)
+                        && screening.exchangeLowerBound(machineIni, posIni, machineEnd, posEnd) < bestMoves.threshold()) {
+                    var move = generateMove(solution, new Coordinate(machineIni, posIni, machineEnd, posEnd));
+                    if (move != null)
+                        bestMoves.add(move);
+                }
+            }
+        }
     }
 
     /**
@@ -59,26 +234,27 @@ public class EfficientExchangeNeighborhood extends ExchangeNeighborhood {
         int pEnd = c.positionEnd();
 
         // Exchange moves between same type of workslots have no effect
-        if ((solution.getSolutionData()[mIni][pIni].getPartId() == solution.getSolutionData()[mEnd][pEnd].getPartId()) &&
-                (solution.getSolutionData()[mIni][pIni].getDuration() == solution.getSolutionData()[mEnd][pEnd].getDuration()))
+        if ((solution.getSchedule(mIni).getPartId(pIni) == solution.getSchedule(mEnd).getPartId(pEnd)) &&
+                (solution.getSchedule(mIni).getDuration(pIni) == solution.getSchedule(mEnd).getDuration(pEnd)))
             return null;
 
-        // Machine weekly produced parts for the move
-        int[][] machineIniWeeklyProducedParts = new int[solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
-        int[][] machineEndWeeklyProducedParts = new int[solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
+        // Machine weekly produced parts and new workslot sequences for the move, in the workspace of the thread to
+        // avoid allocating them for every move
+        var workspace = EvaluationWorkspace.get(solution.getInstance());
+        int[][] machineIniWeeklyProducedParts = workspace.getIniMachineWeeklyProducedParts();
+        int[][] machineEndWeeklyProducedParts = workspace.getEndMachineWeeklyProducedParts();
 
         double changeoverTime = solution.getChangeoverTime();
 
         // Same machine
         if (mIni == mEnd) {
 
-            // New workslot sequence, copied from solution data
-            WorkSlot[] afterMove = new WorkSlot[solution.getNumberOfMachineWorkSlots()[mIni]];
-            System.arraycopy(solution.getSolutionData()[mIni], 0, afterMove, 0, solution.getNumberOfMachineWorkSlots()[mIni]);
+            // Workslots of the machine before the move
+            MachineSchedule beforeMove = solution.getSchedule(mIni);
 
             // Workslots still not moved. Calculate here to avoid different calculations due to adjacent workslots
-            WorkSlot wsIni = afterMove[pIni];
-            WorkSlot wsEnd = afterMove[pEnd];
+            int wsIni = beforeMove.getPartId(pIni);
+            int wsEnd = beforeMove.getPartId(pEnd);
 
             // Calculates new changeover time
 
@@ -87,101 +263,74 @@ public class EfficientExchangeNeighborhood extends ExchangeNeighborhood {
                 int first = Math.min(pIni, pEnd);
                 int second = Math.max(pIni, pEnd);
                 if (first > 0) {
-                    changeoverTime -= solution.getInstance().changeoverTime[afterMove[first - 1].getPartId()][afterMove[first].getPartId()];
-                    changeoverTime += solution.getInstance().changeoverTime[afterMove[first - 1].getPartId()][afterMove[second].getPartId()];
+                    changeoverTime -= solution.getInstance().changeoverTime[beforeMove.getPartId(first - 1)][beforeMove.getPartId(first)];
+                    changeoverTime += solution.getInstance().changeoverTime[beforeMove.getPartId(first - 1)][beforeMove.getPartId(second)];
                 }
-                if (second < (afterMove.length-1)) {
-                    changeoverTime -= solution.getInstance().changeoverTime[afterMove[second].getPartId()][afterMove[second + 1].getPartId()];
-                    changeoverTime += solution.getInstance().changeoverTime[afterMove[first].getPartId()][afterMove[second + 1].getPartId()];
+                if (second < (beforeMove.size()-1)) {
+                    changeoverTime -= solution.getInstance().changeoverTime[beforeMove.getPartId(second)][beforeMove.getPartId(second + 1)];
+                    changeoverTime += solution.getInstance().changeoverTime[beforeMove.getPartId(first)][beforeMove.getPartId(second + 1)];
                 }
             } else {
                 // Update the changeover times of the workslots that have been moved
                 if (pIni > 0) {
-                    changeoverTime -= solution.getInstance().changeoverTime[afterMove[pIni - 1].getPartId()][wsIni.getPartId()];
-                    changeoverTime += solution.getInstance().changeoverTime[afterMove[pIni - 1].getPartId()][wsEnd.getPartId()];
+                    changeoverTime -= solution.getInstance().changeoverTime[beforeMove.getPartId(pIni - 1)][wsIni];
+                    changeoverTime += solution.getInstance().changeoverTime[beforeMove.getPartId(pIni - 1)][wsEnd];
                 }
-                if (pIni < (afterMove.length - 1)) {
-                    changeoverTime -= solution.getInstance().changeoverTime[wsIni.getPartId()][afterMove[pIni + 1].getPartId()];
-                    changeoverTime += solution.getInstance().changeoverTime[wsEnd.getPartId()][afterMove[pIni + 1].getPartId()];
+                if (pIni < (beforeMove.size() - 1)) {
+                    changeoverTime -= solution.getInstance().changeoverTime[wsIni][beforeMove.getPartId(pIni + 1)];
+                    changeoverTime += solution.getInstance().changeoverTime[wsEnd][beforeMove.getPartId(pIni + 1)];
                 }
                 if (pEnd > 0) {
-                    changeoverTime -= solution.getInstance().changeoverTime[afterMove[pEnd - 1].getPartId()][wsEnd.getPartId()];
-                    changeoverTime += solution.getInstance().changeoverTime[afterMove[pEnd - 1].getPartId()][wsIni.getPartId()];
+                    changeoverTime -= solution.getInstance().changeoverTime[beforeMove.getPartId(pEnd - 1)][wsEnd];
+                    changeoverTime += solution.getInstance().changeoverTime[beforeMove.getPartId(pEnd - 1)][wsIni];
                 }
-                if (pEnd < (afterMove.length - 1)) {
-                    changeoverTime -= solution.getInstance().changeoverTime[wsEnd.getPartId()][afterMove[pEnd + 1].getPartId()];
-                    changeoverTime += solution.getInstance().changeoverTime[wsIni.getPartId()][afterMove[pEnd + 1].getPartId()];
+                if (pEnd < (beforeMove.size() - 1)) {
+                    changeoverTime -= solution.getInstance().changeoverTime[wsEnd][beforeMove.getPartId(pEnd + 1)];
+                    changeoverTime += solution.getInstance().changeoverTime[wsIni][beforeMove.getPartId(pEnd + 1)];
                 }
             }
 
-            // Move implemented as in "performMove" in InsertMove
-            afterMove[pIni] = wsEnd;
-            afterMove[pEnd] = wsIni;
-
             // Calculate this machine's weekly production --> Use machineIniWeeklyProducedParts
-            CLSPSolution.calculateMachineWeeklyProducedParts(solution.getInstance(), machineIniWeeklyProducedParts, afterMove, afterMove.length, mIni);
+            EfficientExchangeMove.calculateMove(solution, mIni, pIni, mEnd, pEnd, workspace.getIniSchedule(), null, machineIniWeeklyProducedParts, null);
 
         } else {
 
-            // New workslot sequences copied
-            WorkSlot[] afterMoveIni = new WorkSlot[solution.getNumberOfMachineWorkSlots()[mIni]];
-            System.arraycopy(solution.getSolutionData()[mIni], 0, afterMoveIni, 0, solution.getNumberOfMachineWorkSlots()[mIni]);
-            WorkSlot[] afterMoveEnd = new WorkSlot[solution.getNumberOfMachineWorkSlots()[mEnd]];
-            System.arraycopy(solution.getSolutionData()[mEnd], 0, afterMoveEnd, 0, solution.getNumberOfMachineWorkSlots()[mEnd]);
-
-            // Move implemented as in "performMove" in InsertMove
-            WorkSlot auxMove = afterMoveIni[pIni];
-            afterMoveIni[pIni] = afterMoveEnd[pEnd];
-            afterMoveEnd[pEnd] = auxMove;
+            MachineSchedule afterMoveIni = workspace.getIniSchedule();
+            MachineSchedule afterMoveEnd = workspace.getEndSchedule();
 
-            // Calculate this machine's weekly production --> Use machineIniWeeklyProducedParts
-            CLSPSolution.calculateMachineWeeklyProducedParts(solution.getInstance(), machineIniWeeklyProducedParts, afterMoveIni, afterMoveIni.length, mIni);
-            CLSPSolution.calculateMachineWeeklyProducedParts(solution.getInstance(), machineEndWeeklyProducedParts, afterMoveEnd, afterMoveEnd.length, mEnd);
+            // Calculate the weekly production of both machines
+            EfficientExchangeMove.calculateMove(solution, mIni, pIni, mEnd, pEnd, afterMoveIni, afterMoveEnd, machineIniWeeklyProducedParts, machineEndWeeklyProducedParts);
 
             // Workslots already moved, but taking into account their previous position
-            WorkSlot wsIni = afterMoveEnd[pEnd];
-            WorkSlot wsEnd = afterMoveIni[pIni];
+            int wsIni = afterMoveEnd.getPartId(pEnd);
+            int wsEnd = afterMoveIni.getPartId(pIni);
 
             // Calculates new changeover time
             if (pIni > 0) {
-                changeoverTime -= solution.getInstance().changeoverTime[afterMoveIni[pIni - 1].getPartId()][wsIni.getPartId()];
-                changeoverTime += solution.getInstance().changeoverTime[afterMoveIni[pIni - 1].getPartId()][wsEnd.getPartId()];
+                changeoverTime -= solution.getInstance().changeoverTime[afterMoveIni.getPartId(pIni - 1)][wsIni];
+                changeoverTime += solution.getInstance().changeoverTime[afterMoveIni.getPartId(pIni - 1)][wsEnd];
             }
-            if (pIni < (afterMoveIni.length - 1)) {
-                changeoverTime -= solution.getInstance().changeoverTime[wsIni.getPartId()][afterMoveIni[pIni + 1].getPartId()];
-                changeoverTime += solution.getInstance().changeoverTime[wsEnd.getPartId()][afterMoveIni[pIni + 1].getPartId()];
+            if (pIni < (afterMoveIni.size() - 1)) {
+                changeoverTime -= solution.getInstance().changeoverTime[wsIni][afterMoveIni.getPartId(pIni + 1)];
+                changeoverTime += solution.getInstance().changeoverTime[wsEnd][afterMoveIni.getPartId(pIni + 1)];
             }
             if (pEnd > 0) {
-                changeoverTime -= solution.getInstance().changeoverTime[afterMoveEnd[pEnd - 1].getPartId()][wsEnd.getPartId()];
-                changeoverTime += solution.getInstance().changeoverTime[afterMoveEnd[pEnd - 1].getPartId()][wsIni.getPartId()];
+                changeoverTime -= solution.getInstance().changeoverTime[afterMoveEnd.getPartId(pEnd - 1)][wsEnd];
+                changeoverTime += solution.getInstance().changeoverTime[afterMoveEnd.getPartId(pEnd - 1)][wsIni];
             }
-            if (pEnd < (afterMoveEnd.length - 1)) {
-                changeoverTime -= solution.getInstance().changeoverTime[wsEnd.getPartId()][afterMoveEnd[pEnd + 1].getPartId()];
-                changeoverTime += solution.getInstance().changeoverTime[wsIni.getPartId()][afterMoveEnd[pEnd + 1].getPartId()];
+            if (pEnd < (afterMoveEnd.size() - 1)) {
+                changeoverTime -= solution.getInstance().changeoverTime[wsEnd][afterMoveEnd.getPartId(pEnd + 1)];
+                changeoverTime += solution.getInstance().changeoverTime[wsIni][afterMoveEnd.getPartId(pEnd + 1)];
             }
         }
 
-        // New weekly produced parts for the move: deal with pointers! and don't use a function
-        int[][][] newWeeklyProducedParts = new int[solution.getInstance().getNumMachines()][solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
-        // Accumulate using the other machines' weekly production
-        for (int machine = 0; machine < solution.getInstance().getNumMachines(); machine++)
-            if (machine == mIni) {
-                newWeeklyProducedParts[machine] = machineIniWeeklyProducedParts;
-            } else {
-                if (machine == mEnd)
-                    newWeeklyProducedParts[machine] = machineEndWeeklyProducedParts;
-                else
-                    newWeeklyProducedParts[machine] = solution.getMachineWeeklyProducedParts()[machine];
-            }
-
         // Calculate score
-        var weeklyProductShortage = new int[solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
-        var newWeeklyShortage = solution.fullCalculateWeeklyShortage(newWeeklyProducedParts,weeklyProductShortage);
-        double shortage = solution.calculateShortageFunction(newWeeklyShortage);
+        // Only the cells of the weekly production that change are visited
+        double shortage = solution.calculateShortageAfterChange(mIni, machineIniWeeklyProducedParts, mEnd, machineEndWeeklyProducedParts);
         double newScore = solution.scoreCalculation(changeoverTime, shortage);
 
         moveValue = newScore - solution.getScore();
-        return new EfficientExchangeMove(solution, mIni, pIni, mEnd, pEnd, moveValue, newWeeklyProducedParts, changeoverTime,shortage);
+        return new EfficientExchangeMove(solution, mIni, pIni, mEnd, pEnd, moveValue, changeoverTime, shortage);
     }
 
 }
@@ -2,209 +2,250 @@ package es.urjc.etsii.grafo.CLSP.model.neighborhoods;
 
 import es.urjc.etsii.grafo.CLSP.model.CLSPInstance;
 import es.urjc.etsii.grafo.CLSP.model.CLSPSolution;
+import es.urjc.etsii.grafo.CLSP.model.MachineSchedule;
 import es.urjc.etsii.grafo.CLSP.model.WorkSlot;
+import es.urjc.etsii.grafo.CLSP.model.moves.CLSPBaseMove;
 import es.urjc.etsii.grafo.CLSP.model.moves.EfficientInsertMove;
 import es.urjc.etsii.grafo.CLSP.model.moves.EfficientSwapMove;
 import es.urjc.etsii.grafo.CLSP.model.moves.InsertMove;
+import es.urjc.etsii.grafo.CLSP.model.moves.MoveGenerator;
 import es.urjc.etsii.grafo.solution.neighborhood.ExploreResult;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
 
 public class EfficientInsertBySwapNeighborhood extends EfficientInsertNeighborhood {
 
     private static final int LEFT = 0;
     private static final int RIGHT = 1;
 
+    public EfficientInsertBySwapNeighborhood() {
+        super();
+    }
+
+    /**
+     * @param maxMoves maximum number of moves returned by explore, all the moves if zero
+     */
+    public EfficientInsertBySwapNeighborhood(int maxMoves) {
+        super(maxMoves);
+    }
+
+    /**
+     * @param lazy true to generate the moves lazily, false to return all the moves
+     */
+    public EfficientInsertBySwapNeighborhood(boolean lazy) {
+        super(lazy);
+    }
+
 
     public ExploreResult<InsertMove, CLSPSolution, CLSPInstance> explore(CLSPSolution solution) {
 
-        List<InsertMove> list = new ArrayList<>();
+        if (lazy) {
+            var generator = new LazyGenerator();
+            InsertMove first = generator.next(solution, null);
+            return (first == null) ? ExploreResult.empty() : ExploreResult.fromLazyMove(solution, first);
+        }
+
+        BestMoves<InsertMove> bestMoves = new BestMoves<>(maxMoves);
 
         // For each element in the solution, generate moves by swapping it with the next element
+        for (int machineIni = 0; machineIni < solution.getInstance().getNumMachines(); machineIni++) {
+            for (int pIni = 0; pIni < solution.getNumberOfMachineWorkSlots(machineIni); pIni++) {
+                exploreWorkSlot(solution, machineIni, pIni, bestMoves::add);
+            }
+        }
+
+        return ExploreResult.fromList(bestMoves.getMoves());
+    }
+
+    /**
+     * Generates the moves of a given work slot, swapping it step by step to the left and to the right in its
+     * machine, and then in the other machines. Moves are generated in blocks because each one is calculated from the
+     * previous one.
+     *
+     * @param solution current solution
+     * @param machineIni machine of the work slot
+     * @param pIni position of the work slot
+     * @param moves consumer of the generated moves
+     */
+    private void exploreWorkSlot(CLSPSolution solution, int machineIni, int pIni, Consumer<InsertMove> moves) {
 
-        // Consider one machine:
         double moveValue;
 
-        for (int machineIni = 0; machineIni < solution.getInstance().getNumMachines(); machineIni++) {
+        double changeoverTime = solution.getChangeoverTime();
+        double shortage = solution.getShortage();
 
-            for (int pIni = 0; pIni < solution.getNumberOfMachineWorkSlots()[machineIni]; pIni++) {
+        // Auxiliary data structures
+        int[][][] newMachineWeeklyProducedParts = new int[solution.getInstance().getNumMachines()][solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
+        // Copy of the worklots of the machine
+        MachineSchedule workslotSequence = new MachineSchedule(solution.getNumberOfMachineWorkSlots(machineIni));
+        prepareDataStructures(solution, workslotSequence, machineIni, newMachineWeeklyProducedParts);
 
-                double changeoverTime = solution.getChangeoverTime();
-                double shortage = solution.getShortage();
+        // Calculate weekly produced parts for the current situation in newMachineWeeklyProducedParts
+        int [][] weeklyProducedParts = new int[solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
+        CLSPSolution.calculateWeeklyProducedParts(newMachineWeeklyProducedParts, weeklyProducedParts,solution.getInstance());
 
-                // Auxiliary data structures
-                int[][][] newMachineWeeklyProducedParts = new int[solution.getInstance().getNumMachines()][solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
-                // Copy of the worklots of the machine
-                WorkSlot[] workslotSequence = new WorkSlot[solution.getNumberOfMachineWorkSlots()[machineIni]];
-                prepareDataStructures(solution, workslotSequence, machineIni, newMachineWeeklyProducedParts);
+        // Goes to the LEFT
+        for (int pEnd = pIni; pEnd > 0; pEnd--) {
 
-                // Calculate weekly produced parts for the current situation in newMachineWeeklyProducedParts
-                int [][] weeklyProducedParts = new int[solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
-                CLSPSolution.calculateWeeklyProducedParts(newMachineWeeklyProducedParts, weeklyProducedParts,solution.getInstance());
+            // Always compute the move that swaps pEnd-1 with pEnd
 
-                // Goes to the LEFT
-                for (int pEnd = pIni; pEnd > 0; pEnd--) {
+            // Calculate move value: fill in newWeeklyProducedParts
+            EfficientSwapMove move = createSwapMoveFromAdjacentWorkslots(solution, workslotSequence, pIni, pEnd, changeoverTime, machineIni, machineIni, shortage, newMachineWeeklyProducedParts[machineIni], newMachineWeeklyProducedParts[machineIni], weeklyProducedParts, LEFT);
+            if (move != null) {
+                moves.accept(move);
 
-                    // Always compute the move that swaps pEnd-1 with pEnd
+                // Update current data
+                changeoverTime = move.getChangeoverTime();
+                shortage = move.getShortage();
+            }
 
-                    // Calculate move value: fill in newWeeklyProducedParts
-                    EfficientSwapMove move = createSwapMoveFromAdjacentWorkslots(solution, workslotSequence, pIni, pEnd, changeoverTime, machineIni, machineIni, shortage, newMachineWeeklyProducedParts[machineIni], newMachineWeeklyProducedParts[machineIni], weeklyProducedParts, LEFT);
-                    if (move != null) {
-                        list.add(move);
+        }
 
-                        // Update current data
-                        changeoverTime = move.getChangeoverTime();
-                        shortage = move.getShortage();
-                    }
+        // Auxiliary data structures
+        newMachineWeeklyProducedParts = new int[solution.getInstance().getNumMachines()][solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
+        changeoverTime = solution.getChangeoverTime();
+        shortage = solution.getShortage();
+        prepareDataStructures(solution, workslotSequence, machineIni, newMachineWeeklyProducedParts);
+        weeklyProducedParts = new int[solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
+        CLSPSolution.calculateWeeklyProducedParts(newMachineWeeklyProducedParts, weeklyProducedParts,solution.getInstance());
 
-                }
+        // Goes to the RIGHT
+        for (int pEnd = pIni + 1; pEnd < workslotSequence.size(); pEnd++) {
 
-                // Auxiliary data structures
-                newMachineWeeklyProducedParts = new int[solution.getInstance().getNumMachines()][solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
-                changeoverTime = solution.getChangeoverTime();
-                shortage = solution.getShortage();
-                prepareDataStructures(solution, workslotSequence, machineIni, newMachineWeeklyProducedParts);
-                weeklyProducedParts = new int[solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
-                CLSPSolution.calculateWeeklyProducedParts(newMachineWeeklyProducedParts, weeklyProducedParts,solution.getInstance());
+            // Always compute the move that swaps pEnd-1 with pEnd
 
-                // Goes to the RIGHT
-                for (int pEnd = pIni + 1; pEnd < workslotSequence.length; pEnd++) {
+            // Calculate move value: fill in newWeeklyProducedParts
+            EfficientSwapMove move = createSwapMoveFromAdjacentWorkslots(solution, workslotSequence, pIni, pEnd, changeoverTime, machineIni, machineIni, shortage, newMachineWeeklyProducedParts[machineIni], newMachineWeeklyProducedParts[machineIni], weeklyProducedParts, RIGHT);
+            if (move != null) {
+                moves.accept(move);
 
-                    // Always compute the move that swaps pEnd-1 with pEnd
+                // Update current data
+                changeoverTime = move.getChangeoverTime();
+                shortage = move.getShortage();
+            }
 
-                    // Calculate move value: fill in newWeeklyProducedParts
-                    EfficientSwapMove move = createSwapMoveFromAdjacentWorkslots(solution, workslotSequence, pIni, pEnd, changeoverTime, machineIni, machineIni, shortage, newMachineWeeklyProducedParts[machineIni], newMachineWeeklyProducedParts[machineIni], weeklyProducedParts, RIGHT);
-                    if (move != null) {
-                        list.add(move);
+        }
 
-                        // Update current data
-                        changeoverTime = move.getChangeoverTime();
-                        shortage = move.getShortage();
+        if (solution.getInstance().getNumMachines() == 1) return;
+
+        // Update last workslot timing before removing it --> It is not necessary to update the last workslot because the last right move did not change it
+        CLSPSolution.updateIndividualWorkSlotTiming(workslotSequence.size()-1,workslotSequence, machineIni, solution.getInstance());
+
+        // Extract the last workslot from the machine and add it to the other machines.
+        // It is located at the end of the sequence
+        WorkSlot workslot = workslotSequence.toWorkSlot(workslotSequence.size()-1);
+
+        // Remove its production from the initial machine starting from the initial period of the workslot
+        double machineCapacity = solution.getInstance().getMachineCapacity(machineIni, workslot.getIniPeriod());
+        double iniTime = workslot.getIniTime();
+        double endTime = workslot.getIniTime() + workslot.getDuration();
+        int currPeriod = workslot.getIniPeriod();
+        if (endTime >= machineCapacity) {
+            int production = (int) Math.ceil((machineCapacity-iniTime) * solution.getInstance().productionRate[workslot.getPartId()][machineIni]);
+            if (currPeriod < solution.getInstance().getNumPeriods()) {
+                newMachineWeeklyProducedParts[machineIni][currPeriod][workslot.getPartId()] -= production;
+                if (newMachineWeeklyProducedParts[machineIni][currPeriod][workslot.getPartId()] < 0) {
+                    if (newMachineWeeklyProducedParts[machineIni][currPeriod][workslot.getPartId()] == -1)
+                        newMachineWeeklyProducedParts[machineIni][currPeriod][workslot.getPartId()] = 0;  // Correct rounding problem
+                    else
+                        throw new RuntimeException("Error calculating produced parts: negative value.");
+                }
+            }
+            endTime -= machineCapacity;
+            currPeriod++;
+            for (int i = currPeriod; i < solution.getInstance().getNumPeriods(); i++) {
+                double duration = Math.min(endTime, machineCapacity);
+                production += (int) Math.ceil(duration * solution.getInstance().productionRate[workslot.getPartId()][machineIni]);
+                if (i < solution.getInstance().getNumPeriods()) {
+                    newMachineWeeklyProducedParts[machineIni][i][workslot.getPartId()] -= production;
+                    if (newMachineWeeklyProducedParts[machineIni][currPeriod][workslot.getPartId()] < 0) {
+                        if (newMachineWeeklyProducedParts[machineIni][currPeriod][workslot.getPartId()] == -1)
+                            newMachineWeeklyProducedParts[machineIni][currPeriod][workslot.getPartId()] = 0;  // Correct rounding problem
+                        else
+                           throw new RuntimeException("Error calculating produced parts: negative value.");
                     }
-
                 }
+                endTime -= duration;
+            }
+        } else {
+            for (int i = currPeriod; i < solution.getInstance().getNumPeriods(); i++) {
+                newMachineWeeklyProducedParts[machineIni][i][workslot.getPartId()] -= (int) Math.ceil(workslot.getDuration() * solution.getInstance().productionRate[workslot.getPartId()][machineIni]);
+                if (newMachineWeeklyProducedParts[machineIni][i][workslot.getPartId()] < 0) {
+                    if (newMachineWeeklyProducedParts[machineIni][i][workslot.getPartId()] == -1)
+                        newMachineWeeklyProducedParts[machineIni][i][workslot.getPartId()] = 0;  // Correct rounding problem
+                    else
+                        throw new RuntimeException("Error calculating produced parts: negative value.");
+                }
+            }
+        }
 
-                if (solution.getInstance().getNumMachines() == 1) continue;
-
-                // Update last workslot timing before removing it --> It is not necessary to update the last workslot because the last right move did not change it
-                CLSPSolution.updateIndividualWorkSlotTiming(workslotSequence.length-1,workslotSequence, machineIni, solution.getInstance());
-
-                // Extract the last workslot from the machine and add it to the other machines.
-                // It is located at the end of the sequence
-                WorkSlot workslot = new WorkSlot(workslotSequence[workslotSequence.length-1]);
+// Assert debug
+//checkMachineProducedParts("Update", newMachineWeeklyProducedParts);
 
-                // Remove its production from the initial machine starting from the initial period of the workslot
-                double machineCapacity = solution.getInstance().getMachineCapacity(machineIni, workslot.getIniPeriod());
-                double iniTime = workslot.getIniTime();
-                double endTime = workslot.getIniTime() + workslot.getDuration();
-                int currPeriod = workslot.getIniPeriod();
+        // Remove changeover time of the last workslot. Store the value after removing the workslot
+        if (workslotSequence.size() > 1)
+            changeoverTime -= solution.getInstance().changeoverTime[workslotSequence.getPartId(workslotSequence.size()-2)][workslot.getPartId()];
+
+        // Include the workslot in the other machines
+        // Only the machines able to produce the part are destinations
+        for (int machineEnd : solution.getInstance().getCapableMachines(workslot.getPartId())) {
+            if (machineEnd != machineIni) {
+
+                // Keep a copy of end machine to later recover
+                var machineEndWeeklyProducedParts = new int[solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
+                for (int i = 0; i < solution.getInstance().getNumPeriods(); i++)
+                    if (solution.getInstance().getNumParts() >= 0)
+                        System.arraycopy(newMachineWeeklyProducedParts[machineEnd][i], 0, machineEndWeeklyProducedParts[i], 0, solution.getInstance().getNumParts());
+
+                // Create new workslot sequence with the destination machine and the new workslot
+                workslotSequence = new MachineSchedule(solution.getSchedule(machineEnd));
+                // Add the slot as the last one of the other machine and update its timing
+                workslotSequence.add(workslot.getPartId(), workslot.getDuration());
+                CLSPSolution.updateIndividualWorkSlotTiming(workslotSequence.size()-1, workslotSequence, machineEnd, solution.getInstance());
+                workslot = workslotSequence.toWorkSlot(workslotSequence.size()-1);
+
+                // Calculate new changeover time
+                double newChangeoverTime = changeoverTime + solution.getInstance().changeoverTime[workslotSequence.getPartId(workslotSequence.size()-2)][workslot.getPartId()];
+
+                // Update newWeeklyProducedParts for the end machine
+                machineCapacity = solution.getInstance().getMachineCapacity(machineEnd, workslot.getIniPeriod());
+                iniTime = workslot.getIniTime();
+                endTime = workslot.getIniTime() + workslot.getDuration();
+                currPeriod = workslot.getIniPeriod();
                 if (endTime >= machineCapacity) {
-                    int production = (int) Math.ceil((machineCapacity-iniTime) * solution.getInstance().productionRate[workslot.getPartId()][machineIni]);
+                    int production = (int) Math.ceil((machineCapacity-iniTime) * solution.getInstance().productionRate[workslot.getPartId()][machineEnd]);
                     if (currPeriod < solution.getInstance().getNumPeriods()) {
-                        newMachineWeeklyProducedParts[machineIni][currPeriod][workslot.getPartId()] -= production;
-                        if (newMachineWeeklyProducedParts[machineIni][currPeriod][workslot.getPartId()] < 0) {
-                            if (newMachineWeeklyProducedParts[machineIni][currPeriod][workslot.getPartId()] == -1)
-                                newMachineWeeklyProducedParts[machineIni][currPeriod][workslot.getPartId()] = 0;  // Correct rounding problem
-                            else
-                                throw new RuntimeException("Error calculating produced parts: negative value.");
-                        }
+                        newMachineWeeklyProducedParts[machineEnd][currPeriod][workslot.getPartId()] += production;
                     }
                     endTime -= machineCapacity;
                     currPeriod++;
                     for (int i = currPeriod; i < solution.getInstance().getNumPeriods(); i++) {
+                        // Calculate the remaining production in the following period:
                         double duration = Math.min(endTime, machineCapacity);
-                        production += (int) Math.ceil(duration * solution.getInstance().productionRate[workslot.getPartId()][machineIni]);
-                        if (i < solution.getInstance().getNumPeriods()) {
-                            newMachineWeeklyProducedParts[machineIni][i][workslot.getPartId()] -= production;
-                            if (newMachineWeeklyProducedParts[machineIni][currPeriod][workslot.getPartId()] < 0) {
-                                if (newMachineWeeklyProducedParts[machineIni][currPeriod][workslot.getPartId()] == -1)
-                                    newMachineWeeklyProducedParts[machineIni][currPeriod][workslot.getPartId()] = 0;  // Correct rounding problem
-                                else
-                                   throw new RuntimeException("Error calculating produced parts: negative value.");
-                            }
-                        }
+                        // Accumulate production and sum it to the new weekly produced parts
+                        production += (int) Math.ceil(duration * solution.getInstance().productionRate[workslot.getPartId()][machineEnd]);
+                        if (i < solution.getInstance().getNumPeriods())
+                            newMachineWeeklyProducedParts[machineEnd][i][workslot.getPartId()] += production;
                         endTime -= duration;
                     }
                 } else {
-                    for (int i = currPeriod; i < solution.getInstance().getNumPeriods(); i++) {
-                        newMachineWeeklyProducedParts[machineIni][i][workslot.getPartId()] -= (int) Math.ceil(workslot.getDuration() * solution.getInstance().productionRate[workslot.getPartId()][machineIni]);
-                        if (newMachineWeeklyProducedParts[machineIni][i][workslot.getPartId()] < 0) {
-                            if (newMachineWeeklyProducedParts[machineIni][i][workslot.getPartId()] == -1)
-                                newMachineWeeklyProducedParts[machineIni][i][workslot.getPartId()] = 0;  // Correct rounding problem
-                            else
-                                throw new RuntimeException("Error calculating produced parts: negative value.");
-                        }
-                    }
+                    for (int i = currPeriod; i < solution.getInstance().getNumPeriods(); i++)
+                        newMachineWeeklyProducedParts[machineEnd][i][workslot.getPartId()] += (int) Math.ceil(workslot.getDuration() * solution.getInstance().productionRate[workslot.getPartId()][machineEnd]);
                 }
 
-// Assert debug
-//checkMachineProducedParts("Update", newMachineWeeklyProducedParts);
+                // Calculate score
+                var newWeeklyProductShortage = new int[solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
+                var newWeeklyShortage = solution.fullCalculateWeeklyShortage(newMachineWeeklyProducedParts,newWeeklyProductShortage);
+                shortage = solution.calculateShortageFunction(newWeeklyShortage);
+                double newScore = solution.scoreCalculation(newChangeoverTime, shortage);
+
+                moveValue = newScore - solution.getScore();
 
-                // Remove changeover time of the last workslot. Store the value after removing the workslot
-                if (workslotSequence.length > 1)
-                    changeoverTime -= solution.getInstance().changeoverTime[workslotSequence[workslotSequence.length-2].getPartId()][workslot.getPartId()];
-
-                // Include the workslot in the other machines
-                for (int machineEnd = 0; machineEnd < solution.getInstance().getNumMachines() ; machineEnd++) {
-                    // If the destination machine is not able to produce the part, the move is not possible.
-                    if ((machineEnd != machineIni) && (solution.getInstance().productionRate[workslot.getPartId()][machineEnd] > 0)) {
-
-                        // Keep a copy of end machine to later recover
-                        var machineEndWeeklyProducedParts = new int[solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
-                        for (int i = 0; i < solution.getInstance().getNumPeriods(); i++)
-                            if (solution.getInstance().getNumParts() >= 0)
-                                System.arraycopy(newMachineWeeklyProducedParts[machineEnd][i], 0, machineEndWeeklyProducedParts[i], 0, solution.getInstance().getNumParts());
-
-                        // Create new workslot sequence with the destination machine and the new workslot
-                        workslotSequence = new WorkSlot[solution.getNumberOfMachineWorkSlots()[machineEnd]+1];
-                        for (int i = 0; i < solution.getNumberOfMachineWorkSlots()[machineEnd]; i++) {
-                            workslotSequence[i] = new WorkSlot(solution.getSolutionData()[machineEnd][i]);
-                        }
-                        // Add the slot as the last one of the other machine and update its timing
-                        workslotSequence[workslotSequence.length-1] = workslot;
-                        CLSPSolution.updateIndividualWorkSlotTiming(workslotSequence.length-1, workslotSequence, machineEnd, solution.getInstance());
-
-                        // Calculate new changeover time
-                        double newChangeoverTime = changeoverTime + solution.getInstance().changeoverTime[workslotSequence[workslotSequence.length-2].getPartId()][workslot.getPartId()];
-
-                        // Update newWeeklyProducedParts for the end machine
-                        machineCapacity = solution.getInstance().getMachineCapacity(machineEnd, workslot.getIniPeriod());
-                        iniTime = workslot.getIniTime();
-                        endTime = workslot.getIniTime() + workslot.getDuration();
-                        currPeriod = workslot.getIniPeriod();
-                        if (endTime >= machineCapacity) {
-                            int production = (int) Math.ceil((machineCapacity-iniTime) * solution.getInstance().productionRate[workslot.getPartId()][machineEnd]);
-                            if (currPeriod < solution.getInstance().getNumPeriods()) {
-                                newMachineWeeklyProducedParts[machineEnd][currPeriod][workslot.getPartId()] += production;
-                            }
-                            endTime -= machineCapacity;
-                            currPeriod++;
-                            for (int i = currPeriod; i < solution.getInstance().getNumPeriods(); i++) {
-                                // Calculate the remaining production in the following period:
-                                double duration = Math.min(endTime, machineCapacity);
-                                // Accumulate production and sum it to the new weekly produced parts
-                                production += (int) Math.ceil(duration * solution.getInstance().productionRate[workslot.getPartId()][machineEnd]);
-                                if (i < solution.getInstance().getNumPeriods())
-                                    newMachineWeeklyProducedParts[machineEnd][i][workslot.getPartId()] += production;
-                                endTime -= duration;
-                            }
-                        } else {
-                            for (int i = currPeriod; i < solution.getInstance().getNumPeriods(); i++)
-                                newMachineWeeklyProducedParts[machineEnd][i][workslot.getPartId()] += (int) Math.ceil(workslot.getDuration() * solution.getInstance().productionRate[workslot.getPartId()][machineEnd]);
-                        }
-
-                        // Calculate score
-                        var newWeeklyProductShortage = new int[solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
-                        var newWeeklyShortage = solution.fullCalculateWeeklyShortage(newMachineWeeklyProducedParts,newWeeklyProductShortage);
-                        shortage = solution.calculateShortageFunction(newWeeklyShortage);
-                        double newScore = solution.scoreCalculation(newChangeoverTime, shortage);
-
-                        moveValue = newScore - solution.getScore();
-
-                        // Create the move
-                        EfficientInsertMove newMove = new EfficientInsertMove(solution, machineIni, pIni, machineEnd, solution.getNumberOfMachineWorkSlots()[machineEnd], moveValue, newMachineWeeklyProducedParts[machineIni], newMachineWeeklyProducedParts[machineEnd], newChangeoverTime, shortage);
-                        list.add(newMove);
+                // Create the move
+                EfficientInsertMove newMove = new EfficientInsertMove(solution, machineIni, pIni, machineEnd, solution.getNumberOfMachineWorkSlots(machineEnd), moveValue, newMachineWeeklyProducedParts[machineIni], newMachineWeeklyProducedParts[machineEnd], newChangeoverTime, shortage);
+                moves.accept(newMove);
 /*
 // Assert debug
 checkMachineProducedParts("Insert NEW MACHINE", newMachineWeeklyProducedParts);
@@ -225,41 +266,62 @@ if (diff != 0) {
 
  */
 
-                        // Calculate weekly produced parts for the current situation in newMachineWeeklyProducedParts
-                        weeklyProducedParts = new int[solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
-                        CLSPSolution.calculateWeeklyProducedParts(newMachineWeeklyProducedParts, weeklyProducedParts,solution.getInstance());
-
-                        // Move slot to the LEFT
-                        for (int pEnd = workslotSequence.length-1; pEnd > 0; pEnd--) {
-
-                            // Always compute the move that swaps pEnd-1 with pEnd
-
-                            // Calculate move value: fill in newWeeklyProducedParts
-                            EfficientSwapMove move = createSwapMoveFromAdjacentWorkslots(solution, workslotSequence, pIni, pEnd, newChangeoverTime, machineIni, machineEnd, shortage, newMachineWeeklyProducedParts[machineIni], newMachineWeeklyProducedParts[machineEnd], weeklyProducedParts, LEFT);
-                            if (move != null) {
-                                list.add(move);
+                // Calculate weekly produced parts for the current situation in newMachineWeeklyProducedParts
+                weeklyProducedParts = new int[solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
+                CLSPSolution.calculateWeeklyProducedParts(newMachineWeeklyProducedParts, weeklyProducedParts,solution.getInstance());
 
-                                // Update current data
-                                newChangeoverTime = move.getChangeoverTime();
-                                shortage = move.getShortage();
-                            }
+                // Move slot to the LEFT
+                for (int pEnd = workslotSequence.size()-1; pEnd > 0; pEnd--) {
 
-                        }
+                    // Always compute the move that swaps pEnd-1 with pEnd
 
-                        // Recover machineEndWeeklyProducedParts
-                        for (int i = 0; i < solution.getInstance().getNumPeriods(); i++)
-                            if (solution.getInstance().getNumParts() >= 0)
-                                System.arraycopy(machineEndWeeklyProducedParts[i], 0, newMachineWeeklyProducedParts[machineEnd][i], 0, solution.getInstance().getNumParts());
+                    // Calculate move value: fill in newWeeklyProducedParts
+                    EfficientSwapMove move = createSwapMoveFromAdjacentWorkslots(solution, workslotSequence, pIni, pEnd, newChangeoverTime, machineIni, machineEnd, shortage, newMachineWeeklyProducedParts[machineIni], newMachineWeeklyProducedParts[machineEnd], weeklyProducedParts, LEFT);
+                    if (move != null) {
+                        moves.accept(move);
 
+                        // Update current data
+                        newChangeoverTime = move.getChangeoverTime();
+                        shortage = move.getShortage();
                     }
+
                 }
 
-            }
+                // Recover machineEndWeeklyProducedParts
+                for (int i = 0; i < solution.getInstance().getNumPeriods(); i++)
+                    if (solution.getInstance().getNumParts() >= 0)
+                        System.arraycopy(machineEndWeeklyProducedParts[i], 0, newMachineWeeklyProducedParts[machineEnd][i], 0, solution.getInstance().getNumParts());
 
+            }
         }
+    }
 
-
-        return ExploreResult.fromList(list);
+    /**
+     * Lazy generation of the moves. The moves of each work slot are generated in a block when the previous block
+     * has been consumed.
+     */
+    private class LazyGenerator implements MoveGenerator {
+
+        private final Deque<InsertMove> pending = new ArrayDeque<>();
+        private int machineIni = 0;
+        private int pIni = -1;
+
+        @Override
+        public InsertMove next(CLSPSolution solution, CLSPBaseMove previous) {
+            while (pending.isEmpty()) {
+                pIni++;
+                while (machineIni < solution.getInstance().getNumMachines() && pIni >= solution.getNumberOfMachineWorkSlots(machineIni)) {
+                    machineIni++;
+                    pIni = 0;
+                }
+                if (machineIni >= solution.getInstance().getNumMachines())
+                    return null;
+                exploreWorkSlot(solution, machineIni, pIni, pending::add);
+            }
+            InsertMove move = pending.poll();
+            move.setGenerator(this);
+            return move;
+        }
     }
 
 //    private void checkMachineProducedParts(String desc, int[][][] newMachineWeeklyProducedParts) {
@@ -285,16 +347,14 @@ if (diff != 0) {
      * @param machine Current machine of the current solution
      * @param newWeeklyProducedParts New weekly produced parts, updated only in the current machine
      */
-    private void prepareDataStructures(CLSPSolution solution, WorkSlot[] workslotSequence, int machine, int[][][] newWeeklyProducedParts) {
+    private void prepareDataStructures(CLSPSolution solution, MachineSchedule workslotSequence, int machine, int[][][] newWeeklyProducedParts) {
         // Copy worklots of the machine to a new variable
-        for (int i = 0; i < solution.getNumberOfMachineWorkSlots()[machine]; i++) {
-            workslotSequence[i] = new WorkSlot(solution.getSolutionData()[machine][i]);
-        }
+        workslotSequence.copyFrom(solution.getSchedule(machine));
 
         // Machine weekly produced parts for the move
         // Calculate this machine's weekly production --> Use machineIniWeeklyProducedParts
         int[][] machineIniWeeklyProducedParts = new int[solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
-        CLSPSolution.calculateMachineWeeklyProducedParts(solution.getInstance(), machineIniWeeklyProducedParts, workslotSequence, workslotSequence.length, machine);
+        CLSPSolution.calculateMachineWeeklyProducedParts(solution.getInstance(), machineIniWeeklyProducedParts, workslotSequence, workslotSequence.size(), machine);
         // And the new weekly production
         for (int m = 0; m < solution.getInstance().getNumMachines(); m++)
             for (int i = 0; i < solution.getInstance().getNumPeriods(); i++)
@@ -401,30 +461,28 @@ return move;
      * @param weeklyProducedParts          Weekly produced parts of the current solution
      * @return new EfficientInsertMove
      */
-    private EfficientSwapMove createSwapMoveFromAdjacentWorkslots(CLSPSolution solution, WorkSlot[] workslotSequence, int pIni, int rightIdx, double changeoverTime, int machineIni, int machineEnd, double shortage, int[][] machineIniWeeklyProducedParts, int[][] machineEndWeeklyProducedParts, int[][] weeklyProducedParts, int direction) {
+    private EfficientSwapMove createSwapMoveFromAdjacentWorkslots(CLSPSolution solution, MachineSchedule workslotSequence, int pIni, int rightIdx, double changeoverTime, int machineIni, int machineEnd, double shortage, int[][] machineIniWeeklyProducedParts, int[][] machineEndWeeklyProducedParts, int[][] weeklyProducedParts, int direction) {
 
         // Check if the move has any effect:
-        if ((workslotSequence[rightIdx].getPartId() == workslotSequence[rightIdx-1].getPartId()) &&
-            ((workslotSequence[rightIdx].getDuration() == workslotSequence[rightIdx-1].getDuration()))) {
+        if ((workslotSequence.getPartId(rightIdx) == workslotSequence.getPartId(rightIdx-1)) &&
+            ((workslotSequence.getDuration(rightIdx) == workslotSequence.getDuration(rightIdx-1)))) {
             // No effect
             return null;
         }
 
         // Changeover time change
         if (rightIdx > 1) {
-            changeoverTime -= solution.getInstance().changeoverTime[workslotSequence[rightIdx-2].getPartId()][workslotSequence[rightIdx-1].getPartId()];
-            changeoverTime += solution.getInstance().changeoverTime[workslotSequence[rightIdx-2].getPartId()][workslotSequence[rightIdx].getPartId()];
+            changeoverTime -= solution.getInstance().changeoverTime[workslotSequence.getPartId(rightIdx-2)][workslotSequence.getPartId(rightIdx-1)];
+            changeoverTime += solution.getInstance().changeoverTime[workslotSequence.getPartId(rightIdx-2)][workslotSequence.getPartId(rightIdx)];
         }
 
-        if (rightIdx < (workslotSequence.length - 1)) {
-            changeoverTime -= solution.getInstance().changeoverTime[workslotSequence[rightIdx].getPartId()][workslotSequence[rightIdx+1].getPartId()];
-            changeoverTime += solution.getInstance().changeoverTime[workslotSequence[rightIdx-1].getPartId()][workslotSequence[rightIdx+1].getPartId()];
+        if (rightIdx < (workslotSequence.size() - 1)) {
+            changeoverTime -= solution.getInstance().changeoverTime[workslotSequence.getPartId(rightIdx)][workslotSequence.getPartId(rightIdx+1)];
+            changeoverTime += solution.getInstance().changeoverTime[workslotSequence.getPartId(rightIdx-1)][workslotSequence.getPartId(rightIdx+1)];
         }
 
         // Perform swap move in copied structure
-        var aux = workslotSequence[rightIdx];
-        workslotSequence[rightIdx] = workslotSequence[rightIdx-1];
-        workslotSequence[rightIdx-1] = aux;
+        MachineSchedule.exchange(workslotSequence, rightIdx, workslotSequence, rightIdx-1);
 
 //        // Check if the changeover time has changed
 //        if (changeoverTime == prevChangeoverTime) {
@@ -438,20 +496,20 @@ return move;
 //            }
 //        } else {
 //            // A full update of the workslot sequence is needed starting from the left workslot
-//            for (int i = rightIdx - 1; i< workslotSequence.length; i++) {
+//            for (int i = rightIdx - 1; i< workslotSequence.size(); i++) {
 //                CLSPSolution.updateIndividualWorkSlotTiming(i, workslotSequence, machineEnd, solution.getInstance());
 //            }
 //        }
 
         // A full update of the workslot sequence is needed starting from the left workslot
-        for (int i = rightIdx - 1; i< workslotSequence.length; i++) {
+        for (int i = rightIdx - 1; i< workslotSequence.size(); i++) {
             CLSPSolution.updateIndividualWorkSlotTiming(i, workslotSequence, machineEnd, solution.getInstance());
         }
 
         // Machine weekly produced parts for the move
         var newMachineWeeklyProducedParts = new int[solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
         // Calculate this machine's weekly production --> fills in  newMachineWeeklyProducedParts
-        CLSPSolution.calculateMachineWeeklyProducedParts(solution.getInstance(), newMachineWeeklyProducedParts, workslotSequence, workslotSequence.length, machineEnd);
+        CLSPSolution.calculateMachineWeeklyProducedParts(solution.getInstance(), newMachineWeeklyProducedParts, workslotSequence, workslotSequence.size(), machineEnd);
 
         // Calculate differences and shortage
         for (int period = 0; period < solution.getInstance().getNumPeriods(); period++)
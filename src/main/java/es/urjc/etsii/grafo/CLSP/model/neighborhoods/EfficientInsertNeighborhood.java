@@ -3,43 +3,124 @@ package es.urjc.etsii.grafo.CLSP.model.neighborhoods;
 
 import es.urjc.etsii.grafo.CLSP.model.CLSPInstance;
 import es.urjc.etsii.grafo.CLSP.model.CLSPSolution;
-import es.urjc.etsii.grafo.CLSP.model.WorkSlot;
+import es.urjc.etsii.grafo.CLSP.model.EvaluationWorkspace;
+import es.urjc.etsii.grafo.CLSP.model.MachineSchedule;
+import es.urjc.etsii.grafo.CLSP.model.moves.CLSPBaseMove;
 import es.urjc.etsii.grafo.CLSP.model.moves.EfficientInsertMove;
 import es.urjc.etsii.grafo.CLSP.model.moves.InsertMove;
 import es.urjc.etsii.grafo.solution.neighborhood.ExploreResult;
-import java.util.ArrayList;
+import es.urjc.etsii.grafo.util.random.RandomManager;
+
 import java.util.List;
+import java.util.Optional;
+import java.util.random.RandomGenerator;
 
 public class EfficientInsertNeighborhood extends InsertNeighborhood {
 
-    protected EfficientInsertMove generateMoveSameMachine(CLSPSolution solution, int mIni, int pIni, int pEnd) {
-        // Machine weekly produced parts for the move (same machine)
-        int[][] machineIniWeeklyProducedParts = new int[solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
-        int[][] machineEndWeeklyProducedParts = machineIniWeeklyProducedParts;
-        int[][][] newWeeklyProducedParts = new int[solution.getInstance().getNumMachines()][solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
+    // Draws of a random move before choosing it from the full list of moves
+    private static final int MAX_RANDOM_ATTEMPTS = 100;
+
+    // Maximum number of moves returned by explore, all the improving moves if zero
+    protected final int maxMoves;
+    // Moves generated on demand, one after another
+    protected final boolean lazy;
+    // Initial work slots explored in parallel
+    protected final boolean parallel;
+    // Skip the parts whose don't look bit is set in the solution
+    protected final boolean dontLookBits;
+
+    /**
+     * Neighborhood that returns all the improving moves
+     */
+    public EfficientInsertNeighborhood() {
+        this(0);
+    }
 
-        double changeoverTime = solution.getChangeoverTime();
+    /**
+     * Neighborhood that only keeps the best improving moves while exploring, so the memory used does not depend on
+     * the size of the neighborhood. Use 1 for best improvement local searches.
+     *
+     * @param maxMoves maximum number of moves returned by explore, all the improving moves if zero
+     */
+    public EfficientInsertNeighborhood(int maxMoves) {
+        this(maxMoves, false);
+    }
 
-        // New workslot sequence, copied from solution data
-        WorkSlot[] afterMove = new WorkSlot[solution.getNumberOfMachineWorkSlots()[mIni]];
-        System.arraycopy(solution.getSolutionData()[mIni], 0, afterMove, 0, solution.getNumberOfMachineWorkSlots()[mIni]);
+    /**
+     * Neighborhood that only keeps the best improving moves, and can explore the initial work slots in parallel.
+     * The parallel exploration returns the same moves as the sequential one.
+     *
+     * @param maxMoves maximum number of moves returned by explore, all the improving moves if zero
+     * @param parallel true to explore in parallel
+     */
+    public EfficientInsertNeighborhood(int maxMoves, boolean parallel) {
+        this(maxMoves, parallel, false);
+    }
 
-        // Move implemented as in "performMove" in InsertMove
-        WorkSlot aux = afterMove[pIni];
-        // If the machine is the same, the move is simpler
-        if (pIni < pEnd) {
-            for (int i = pIni; i < pEnd; i++) {
-                afterMove[i] = afterMove[i + 1];
-            }
+    /**
+     * Neighborhood that only keeps the best improving moves, can explore the initial work slots in parallel and
+     * can use don't look bits. With don't look bits, the work slots of a part are not explored after an exploration
+     * where none of them had an improving move, until the solution changes near any of them (see
+     * {@link CLSPSolution#resetDontLook}).
+     *
+     * @param maxMoves maximum number of moves returned by explore, all the improving moves if zero
+     * @param parallel true to explore in parallel
+     * @param dontLookBits true to use the don't look bits of the solution
+     */
+    public EfficientInsertNeighborhood(int maxMoves, boolean parallel, boolean dontLookBits) {
+        this.maxMoves = maxMoves;
+        this.lazy = false;
+        this.parallel = parallel;
+        this.dontLookBits = dontLookBits;
+    }
+
+    /**
+     * Neighborhood that, if lazy, generates every move on demand in the same order as the eager exploration, so a
+     * first improvement local search stops evaluating moves as soon as it finds an improving one.
+     *
+     * @param lazy true to generate the moves lazily, false to return all the improving moves
+     */
+    public EfficientInsertNeighborhood(boolean lazy) {
+        this.maxMoves = 0;
+        this.lazy = lazy;
+        this.parallel = false;
+        this.dontLookBits = false;
+    }
+
+    /**
+     * Generates the next insert move of a lazy exploration
+     *
+     * @param solution current solution
+     * @param previous previous move, or null to generate the first one
+     * @return next move, or null if there are no more moves
+     */
+    private EfficientInsertMove nextMove(CLSPSolution solution, CLSPBaseMove previous) {
+        Coordinate c = (previous == null) ? null : new Coordinate(previous.getInitialMachineId(), previous.getInitialPosition(), previous.getFinalMachineId(), previous.getFinalPosition());
+        c = nextCoordinate(solution, c, false);
+        if (c == null)
+            return null;
+        EfficientInsertMove move;
+        if (c.machineIni() == c.machineEnd()) {
+            move = generateMoveSameMachine(solution, c.machineIni(), c.positionIni(), c.positionEnd());
         } else {
-            for (int i = pIni; i > pEnd; i--) {
-                afterMove[i] = afterMove[i - 1];
-            }
+            move = generateMoveDifferentMachine(solution, c.machineIni(), c.machineEnd(), c.positionIni(), c.positionEnd());
         }
-        afterMove[pEnd] = aux;
+        move.setGenerator(this::nextMove);
+        return move;
+    }
 
+    protected EfficientInsertMove generateMoveSameMachine(CLSPSolution solution, int mIni, int pIni, int pEnd) {
+        // Machine weekly produced parts and new workslot sequence for the move (same machine), in the workspace of
+        // the thread to avoid allocating them for every move
+        var workspace = EvaluationWorkspace.get(solution.getInstance());
+        int[][] machineIniWeeklyProducedParts = workspace.getIniMachineWeeklyProducedParts();
+        MachineSchedule afterMove = workspace.getIniSchedule();
+
+        double changeoverTime = solution.getChangeoverTime();
+
+        int aux = solution.getSchedule(mIni).getPartId(pIni);
         // Calculate this machine's weekly production --> Use machineIniWeeklyProducedParts
-        CLSPSolution.calculateMachineWeeklyProducedParts(solution.getInstance(), machineIniWeeklyProducedParts, afterMove, afterMove.length, mIni);
+        EfficientInsertMove.calculateMove(solution, mIni, pIni, mIni, pEnd, afterMove, null, machineIniWeeklyProducedParts, null);
 
         // Calculates new changeover time
         // The update is different if the workslot is moved to the beginning or the end of the sequence
@@ -47,162 +128,329 @@ public class EfficientInsertNeighborhood extends InsertNeighborhood {
             // pIni = 1 -> pEnd = 10
             // 0 1 2 3 4 5 6 7 8 9 10 11 12  --> 0 2 3 4 5 6 7 8 9 10 1 11 12
             if (pIni > 0)
-                changeoverTime -= solution.getInstance().changeoverTime[afterMove[pIni - 1].getPartId()][aux.getPartId()];
-            if (pIni < (afterMove.length - 1))
-                changeoverTime -= solution.getInstance().changeoverTime[aux.getPartId()][afterMove[pIni].getPartId()];
-            if ((pIni > 0) && (pIni < (afterMove.length - 1)))
-                changeoverTime += solution.getInstance().changeoverTime[afterMove[pIni - 1].getPartId()][afterMove[pIni].getPartId()];
-            changeoverTime += solution.getInstance().changeoverTime[afterMove[pEnd - 1].getPartId()][aux.getPartId()];
-            if (pEnd < (afterMove.length - 1)) {
-                changeoverTime += solution.getInstance().changeoverTime[aux.getPartId()][afterMove[pEnd + 1].getPartId()];
-                changeoverTime -= solution.getInstance().changeoverTime[afterMove[pEnd - 1].getPartId()][afterMove[pEnd + 1].getPartId()];
+                changeoverTime -= solution.getInstance().changeoverTime[afterMove.getPartId(pIni - 1)][aux];
+            if (pIni < (afterMove.size() - 1))
+                changeoverTime -= solution.getInstance().changeoverTime[aux][afterMove.getPartId(pIni)];
+            if ((pIni > 0) && (pIni < (afterMove.size() - 1)))
+                changeoverTime += solution.getInstance().changeoverTime[afterMove.getPartId(pIni - 1)][afterMove.getPartId(pIni)];
+            changeoverTime += solution.getInstance().changeoverTime[afterMove.getPartId(pEnd - 1)][aux];
+            if (pEnd < (afterMove.size() - 1)) {
+                changeoverTime += solution.getInstance().changeoverTime[aux][afterMove.getPartId(pEnd + 1)];
+                changeoverTime -= solution.getInstance().changeoverTime[afterMove.getPartId(pEnd - 1)][afterMove.getPartId(pEnd + 1)];
             }
         } else {
             // pIni = 10 -> pEnd = 1
             // 0 1 2 3 4 5 6 7 8 9 10 11 12  --> 0 10 1 2 3 4 5 6 7 8 9 11 12
-            changeoverTime -= solution.getInstance().changeoverTime[afterMove[pIni].getPartId()][aux.getPartId()];
-            if (pIni < (afterMove.length - 1)) {
-                changeoverTime -= solution.getInstance().changeoverTime[aux.getPartId()][afterMove[pIni + 1].getPartId()];
-                changeoverTime += solution.getInstance().changeoverTime[afterMove[pIni].getPartId()][afterMove[pIni + 1].getPartId()];
+            changeoverTime -= solution.getInstance().changeoverTime[afterMove.getPartId(pIni)][aux];
+            if (pIni < (afterMove.size() - 1)) {
+                changeoverTime -= solution.getInstance().changeoverTime[aux][afterMove.getPartId(pIni + 1)];
+                changeoverTime += solution.getInstance().changeoverTime[afterMove.getPartId(pIni)][afterMove.getPartId(pIni + 1)];
             }
-            changeoverTime += solution.getInstance().changeoverTime[aux.getPartId()][afterMove[pEnd + 1].getPartId()];
+            changeoverTime += solution.getInstance().changeoverTime[aux][afterMove.getPartId(pEnd + 1)];
             if (pEnd > 0) {
-                changeoverTime += solution.getInstance().changeoverTime[afterMove[pEnd - 1].getPartId()][aux.getPartId()];
-                changeoverTime -= solution.getInstance().changeoverTime[afterMove[pEnd - 1].getPartId()][afterMove[pEnd + 1].getPartId()];
+                changeoverTime += solution.getInstance().changeoverTime[afterMove.getPartId(pEnd - 1)][aux];
+                changeoverTime -= solution.getInstance().changeoverTime[afterMove.getPartId(pEnd - 1)][afterMove.getPartId(pEnd + 1)];
             }
         }
 
-        // New weekly produced parts for the move: deal with pointers! and don't use a function
-        // Accumulate using the other machines' weekly production
-        for (int machine = 0; machine < solution.getInstance().getNumMachines(); machine++)
-            if (machine == mIni) {
-                newWeeklyProducedParts[machine] = machineIniWeeklyProducedParts;
-            } else {
-                newWeeklyProducedParts[machine] = solution.getMachineWeeklyProducedParts()[machine];
-            }
-
-
-        // Calculate score
-        var weeklyProductShortage = new int[solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
-        var newWeeklyShortage = solution.fullCalculateWeeklyShortage(newWeeklyProducedParts, weeklyProductShortage);
-        double shortage = solution.calculateShortageFunction(newWeeklyShortage);
+        // Calculate score. Only the cells of the weekly production that change are visited
+        double shortage = solution.calculateShortageAfterChange(mIni, machineIniWeeklyProducedParts, mIni, machineIniWeeklyProducedParts);
         double newScore = solution.scoreCalculation(changeoverTime, shortage);
 
         double moveValue = newScore - solution.getScore();
-        return new EfficientInsertMove(solution, mIni, pIni, mIni, pEnd, moveValue, machineIniWeeklyProducedParts, machineEndWeeklyProducedParts, changeoverTime, shortage);
+        return new EfficientInsertMove(solution, mIni, pIni, mIni, pEnd, moveValue, changeoverTime, shortage);
     }
 
 
     private EfficientInsertMove generateMoveDifferentMachine(CLSPSolution solution, int mIni, int mEnd, int pIni, int pEnd) {
 
-        // Machine weekly produced parts for the move (different machines)
-        int[][] machineIniWeeklyProducedParts = new int[solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
-        int[][] machineEndWeeklyProducedParts = new int[solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
-        int[][][] newWeeklyProducedParts = new int[solution.getInstance().getNumMachines()][solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
+        // Machine weekly produced parts and new workslot sequences for the move (different machines), in the
+        // workspace of the thread to avoid allocating them for every move
+        var workspace = EvaluationWorkspace.get(solution.getInstance());
+        int[][] machineIniWeeklyProducedParts = workspace.getIniMachineWeeklyProducedParts();
+        int[][] machineEndWeeklyProducedParts = workspace.getEndMachineWeeklyProducedParts();
+        MachineSchedule afterMoveIni = workspace.getIniSchedule();
+        MachineSchedule afterMoveEnd = workspace.getEndSchedule();
 
         double changeoverTime = solution.getChangeoverTime();
 
-        // New workslot sequences copying at the same time as moving
-        WorkSlot aux = solution.getSolutionData()[mIni][pIni];
-
-        WorkSlot[] afterMoveIni = new WorkSlot[solution.getNumberOfMachineWorkSlots()[mIni] - 1];
-        int index = 0;
-        for (int i = 0; i < solution.getNumberOfMachineWorkSlots()[mIni]; i++) {
-            if (i != pIni) {
-                afterMoveIni[index] = solution.getSolutionData()[mIni][i];
-                index++;
-            }
-        }
-        WorkSlot[] afterMoveEnd = new WorkSlot[solution.getNumberOfMachineWorkSlots()[mEnd] + 1];
-        index = 0;
-        for (int i = 0; i < solution.getNumberOfMachineWorkSlots()[mEnd]; i++) {
-            if (i == pEnd) {
-                afterMoveEnd[index] = aux;
-                index++;
-            }
-            afterMoveEnd[index] = solution.getSolutionData()[mEnd][i];
-            index++;
-        }
-        // Special case where the workslot is moved to the end of the machine
-        if (pEnd == solution.getNumberOfMachineWorkSlots()[mEnd]) {
-            afterMoveEnd[index] = aux;
-        }
-
-        // Calculate this machine's weekly production --> Use machineIniWeeklyProducedParts
-        CLSPSolution.calculateMachineWeeklyProducedParts(solution.getInstance(), machineIniWeeklyProducedParts, afterMoveIni, afterMoveIni.length, mIni);
-        CLSPSolution.calculateMachineWeeklyProducedParts(solution.getInstance(), machineEndWeeklyProducedParts, afterMoveEnd, afterMoveEnd.length, mEnd);
+        int aux = solution.getSchedule(mIni).getPartId(pIni);
+        // Calculate the weekly production of both machines
+        EfficientInsertMove.calculateMove(solution, mIni, pIni, mEnd, pEnd, afterMoveIni, afterMoveEnd, machineIniWeeklyProducedParts, machineEndWeeklyProducedParts);
 
         // Calculates new changeover time
         if (pIni > 0)
-            changeoverTime -= solution.getInstance().changeoverTime[afterMoveIni[pIni - 1].getPartId()][aux.getPartId()];
-        if (pIni < afterMoveIni.length)
-            changeoverTime -= solution.getInstance().changeoverTime[aux.getPartId()][afterMoveIni[pIni].getPartId()];
-        if (pIni > 0 && pIni < afterMoveIni.length)
-            changeoverTime += solution.getInstance().changeoverTime[afterMoveIni[pIni - 1].getPartId()][afterMoveIni[pIni].getPartId()];
+            changeoverTime -= solution.getInstance().changeoverTime[afterMoveIni.getPartId(pIni - 1)][aux];
+        if (pIni < afterMoveIni.size())
+            changeoverTime -= solution.getInstance().changeoverTime[aux][afterMoveIni.getPartId(pIni)];
+        if (pIni > 0 && pIni < afterMoveIni.size())
+            changeoverTime += solution.getInstance().changeoverTime[afterMoveIni.getPartId(pIni - 1)][afterMoveIni.getPartId(pIni)];
 
         if (pEnd > 0)
-            changeoverTime += solution.getInstance().changeoverTime[afterMoveEnd[pEnd - 1].getPartId()][aux.getPartId()];
-        if (pEnd < (afterMoveEnd.length - 1))
-            changeoverTime += solution.getInstance().changeoverTime[aux.getPartId()][afterMoveEnd[pEnd + 1].getPartId()];
-        if (pEnd > 0 && pEnd < (afterMoveEnd.length - 1))
-            changeoverTime -= solution.getInstance().changeoverTime[afterMoveEnd[pEnd - 1].getPartId()][afterMoveEnd[pEnd + 1].getPartId()];
-
-
-        // Accumulate using the other machines' weekly production
-        for (int machine = 0; machine < solution.getInstance().getNumMachines(); machine++)
-            if (machine == mIni) {
-                newWeeklyProducedParts[machine] = machineIniWeeklyProducedParts;
-            } else {
-                if (machine == mEnd)
-                    newWeeklyProducedParts[machine] = machineEndWeeklyProducedParts;
-                else
-                    newWeeklyProducedParts[machine] = solution.getMachineWeeklyProducedParts()[machine];
-            }
+            changeoverTime += solution.getInstance().changeoverTime[afterMoveEnd.getPartId(pEnd - 1)][aux];
+        if (pEnd < (afterMoveEnd.size() - 1))
+            changeoverTime += solution.getInstance().changeoverTime[aux][afterMoveEnd.getPartId(pEnd + 1)];
+        if (pEnd > 0 && pEnd < (afterMoveEnd.size() - 1))
+            changeoverTime -= solution.getInstance().changeoverTime[afterMoveEnd.getPartId(pEnd - 1)][afterMoveEnd.getPartId(pEnd + 1)];
+
 
-        // Calculate score
-        var weeklyProductShortage = new int[solution.getInstance().getNumPeriods()][solution.getInstance().getNumParts()];
-        var newWeeklyShortage = solution.fullCalculateWeeklyShortage(newWeeklyProducedParts, weeklyProductShortage);
-        double shortage = solution.calculateShortageFunction(newWeeklyShortage);
+        // Calculate score. Only the cells of the weekly production that change are visited
+        double shortage = solution.calculateShortageAfterChange(mIni, machineIniWeeklyProducedParts, mEnd, machineEndWeeklyProducedParts);
         double newScore = solution.scoreCalculation(changeoverTime, shortage);
 
         double moveValue = newScore - solution.getScore();
-        return new EfficientInsertMove(solution, mIni, pIni, mEnd, pEnd, moveValue, machineIniWeeklyProducedParts, machineEndWeeklyProducedParts, changeoverTime, shortage);
+        return new EfficientInsertMove(solution, mIni, pIni, mEnd, pEnd, moveValue, changeoverTime, shortage);
+
+    }
+
+
+    /**
+     * Random insert move. Instead of generating every coordinate of the neighborhood, the initial work slot is drawn
+     * among all the work slots, and the final position among the positions of the machines able to produce the initial
+     * part. Only the drawn move is evaluated, so the cost does not depend on the size of the neighborhood. Draws that
+     * are not valid moves are repeated, and if no valid move is found after {@link #MAX_RANDOM_ATTEMPTS} draws, the
+     * move is chosen from the full list of moves.
+     *
+     * @param solution current solution
+     * @return random insert move, or empty if there are no insert moves
+     */
+    @Override
+    public Optional<InsertMove> getRandomMove(CLSPSolution solution) {
+        return getRandomMove(solution, RandomManager.getRandom());
+    }
+
+    /**
+     * Random insert move, drawn with the given random generator instead of the one of the current thread.
+     *
+     * @param solution current solution
+     * @param random random generator
+     * @return random insert move, or empty if there are no insert moves
+     */
+    public Optional<InsertMove> getRandomMove(CLSPSolution solution, RandomGenerator random) {
+        var instance = solution.getInstance();
+
+        int totalWorkSlots = 0;
+        for (int machine = 0; machine < instance.getNumMachines(); machine++) {
+            totalWorkSlots += solution.getNumberOfMachineWorkSlots(machine);
+        }
+        if (totalWorkSlots == 0) {
+            return Optional.empty();
+        }
+
+        for (int attempt = 0; attempt < MAX_RANDOM_ATTEMPTS; attempt++) {
+            // Initial work slot
+            int mIni = 0;
+            int pIni = random.nextInt(totalWorkSlots);
+            while (pIni >= solution.getNumberOfMachineWorkSlots(mIni)) {
+                pIni -= solution.getNumberOfMachineWorkSlots(mIni);
+                mIni++;
+            }
+
+            // Final position, in a machine able to produce the initial part. Work slots can be inserted after the
+            // last one of each machine.
+            int[] machines = instance.getCapableMachines(solution.getSchedule(mIni).getPartId(pIni));
+            int candidates = 0;
+            for (int machine : machines) {
+                candidates += solution.getNumberOfMachineWorkSlots(machine) + 1;
+            }
+            int i = 0;
+            int pEnd = random.nextInt(candidates);
+            while (pEnd > solution.getNumberOfMachineWorkSlots(machines[i])) {
+                pEnd -= solution.getNumberOfMachineWorkSlots(machines[i]) + 1;
+                i++;
+            }
+            int mEnd = machines[i];
 
+            if (isValidMove(solution, mIni, pIni, mEnd, pEnd, false)) {
+                return Optional.of(generateMove(solution, mIni, pIni, mEnd, pEnd));
+            }
+        }
+
+        List<Coordinate> moves = generateMoves(solution, false);
+        if (moves.isEmpty()) {
+            return Optional.empty();
+        }
+        Coordinate c = moves.get(random.nextInt(moves.size()));
+        return Optional.of(generateMove(solution, c.machineIni(), c.positionIni(), c.machineEnd(), c.positionEnd()));
     }
 
+    private EfficientInsertMove generateMove(CLSPSolution solution, int mIni, int pIni, int mEnd, int pEnd) {
+        if (mIni == mEnd) {
+            return generateMoveSameMachine(solution, mIni, pIni, pEnd);
+        }
+        return generateMoveDifferentMachine(solution, mIni, mEnd, pIni, pEnd);
+    }
 
     public ExploreResult<InsertMove, CLSPSolution, CLSPInstance> explore(CLSPSolution solution) {
-        List<InsertMove> list = new ArrayList<>();
+        if (lazy) {
+            InsertMove first = nextMove(solution, null);
+            return (first == null) ? ExploreResult.empty() : ExploreResult.fromLazyMove(solution, first);
+        }
+
+        if (dontLookBits)
+            return exploreWithDontLookBits(solution);
+
+        var screening = new MoveScreening(solution);
+        if (parallel)
+            return ExploreResult.fromList(exploreInParallel(solution, maxMoves, (s, machineIni, posIni, moves) -> exploreSource(s, screening, machineIni, posIni, moves)).getMoves());
 
+        BestMoves<InsertMove> bestMoves = new BestMoves<>(maxMoves);
         for (int machineIni = 0; machineIni < solution.getInstance().getNumMachines(); machineIni++) {
-            for (int posIni = 0; posIni < solution.getNumberOfMachineWorkSlots()[machineIni]; posIni++) {
-                // Moves can be made in the same machine.
-                for (int machineEnd = 0; machineEnd < solution.getInstance().getNumMachines(); machineEnd++) {
-                    // Insertion must allow to include a workslot at the end of the machine.
-                    for (int posEnd = 0; posEnd <= solution.getNumberOfMachineWorkSlots()[machineEnd]; posEnd++) {
-                        // Moves in different places and also not after the workslots of the same machine.
-                        if ((machineIni == machineEnd) && ((posIni == posEnd) || (posEnd == solution.getNumberOfMachineWorkSlots()[machineEnd]))) {
-                            continue;
-                        }
-                        // If the destination machine is not able to produce the part, the move is not possible.
-                        if (solution.getInstance().productionRate[solution.getSolutionData()[machineIni][posIni].getPartId()][machineEnd] == 0) {
-                            continue;
-                        }
-                        EfficientInsertMove move;
-                        if (machineIni == machineEnd) {
-                            move = generateMoveSameMachine(solution, machineIni, posIni, posEnd);
-                        } else {
-                            move = generateMoveDifferentMachine(solution, machineIni, machineEnd, posIni, posEnd);
-                        }
-                        // Only store improving moves
-                        if (move.getMoveValue() < 0)
-                            list.add(move);
-                    }
+            for (int posIni = 0; posIni < solution.getNumberOfMachineWorkSlots(machineIni); posIni++) {
+                exploreSource(solution, screening, machineIni, posIni, bestMoves);
+            }
+        }
+
+        return ExploreResult.fromList(bestMoves.getMoves());
+    }
+
+    /**
+     * Explores the neighborhood skipping the parts whose don't look bit is set. After the exploration, the bit is
+     * set for every explored part without improving moves.
+     */
+    private ExploreResult<InsertMove, CLSPSolution, CLSPInstance> exploreWithDontLookBits(CLSPSolution solution) {
+        int numParts = solution.getInstance().getNumParts();
+        boolean[] exploredParts = new boolean[numParts];
+        // Only set to true, so it can be written by several threads
+        boolean[] improvingParts = new boolean[numParts];
+        var screening = new MoveScreening(solution);
+
+        SourceExplorer<InsertMove> explorer = (s, machineIni, posIni, moves) -> {
+            int partId = s.getSchedule(machineIni).getPartId(posIni);
+            if (s.isDontLook(partId))
+                return;
+            exploredParts[partId] = true;
+            if (exploreSource(s, screening, machineIni, posIni, moves))
+                improvingParts[partId] = true;
+        };
+
+        BestMoves<InsertMove> bestMoves;
+        if (parallel) {
+            bestMoves = exploreInParallel(solution, maxMoves, explorer);
+        } else {
+            bestMoves = new BestMoves<>(maxMoves);
+            for (int machineIni = 0; machineIni < solution.getInstance().getNumMachines(); machineIni++) {
+                for (int posIni = 0; posIni < solution.getNumberOfMachineWorkSlots(machineIni); posIni++) {
+                    explorer.explore(solution, machineIni, posIni, bestMoves);
+                }
+            }
+        }
+
+        for (int partId = 0; partId < numParts; partId++) {
+            if (exploredParts[partId] && !improvingParts[partId])
+                solution.setDontLook(partId);
+        }
+
+        return ExploreResult.fromList(bestMoves.getMoves());
+    }
+
+    /**
+     * Explores the improving insert moves of the work slot in a given position of a given machine. Moves whose lower
+     * bound shows that they would not be kept are not evaluated completely.
+     *
+     * @return true if the work slot has any improving move
+     */
+    private boolean exploreSource(CLSPSolution solution, MoveScreening screening, int machineIni, int posIni, BestMoves<InsertMove> bestMoves) {
+        boolean improving = false;
+        // Moves can be made in the same machine. Only the machines able to produce the part are destinations.
+        for (int machineEnd : solution.getInstance().getCapableMachines(solution.getSchedule(machineIni).getPartId(posIni))) {
+            // Insertion must allow to include a workslot at the end of the machine.
+            for (int posEnd = 0; posEnd <= solution.getNumberOfMachineWorkSlots(machineEnd); posEnd++) {
+                // Moves in different places and also not after the workslots of the same machine.
+                if ((machineIni == machineEnd) && ((posIni == posEnd) || (posEnd == solution.getNumberOfMachineWorkSlots(machineEnd)))) {
+                    continue;
+                }
+                // Screening: a move is only kept if it improves and it is better than the kept moves. Until an
+                // improving move of this work slot is found, any improving move is needed to know if it improves
+                double limit = improving ? Math.min(0, bestMoves.threshold()) : 0;
+                if (screening.insertLowerBound(machineIni, posIni, machineEnd, posEnd) >= limit) {
+                    continue;
+                }
+                EfficientInsertMove move;
+                if (machineIni == machineEnd) {
+                    move = generateMoveSameMachine(solution, machineIni, posIni, posEnd);
+                } else {
+                    move = generateMoveDifferentMachine(solution, machineIni, machineEnd, posIni, posEnd);
+                }
+                // Only store improving moves
+                if (move.getMoveValue() < 0) {
+                    bestMoves.add(move);
+                    improving = true;
+                }
+            }
+        }
+        return improving;
+    }
+
+
+    /**
+     * Restriction of the insert moves of a work slot, for example the tabu moves of a tabu search
+     */
+    @FunctionalInterface
+    public interface MoveRestriction {
+        boolean isRestricted(int partId, int machineIni, int posIni, int machineEnd, int posEnd);
+    }
+
+    /**
+     * Best insert move of the whole neighborhood, improving or not, among the moves that are not restricted and the
+     * restricted moves whose value is lower than the aspiration value. Moves whose lower bound shows that they cannot
+     * be better than the best admissible move found so far are not evaluated completely. Uses the parallel exploration
+     * if it is enabled, and returns the same move as the sequential one.
+     *
+     * @param solution        current solution
+     * @param restriction     moves that are only admissible by aspiration
+     * @param aspirationValue value that a restricted move must improve to be admissible
+     * @return best admissible move, or null if there is none
+     */
+    public EfficientInsertMove bestAdmissibleMove(CLSPSolution solution, MoveRestriction restriction, double aspirationValue) {
+        var screening = new MoveScreening(solution);
+        SourceExplorer<InsertMove> explorer = (s, machineIni, posIni, moves) -> exploreAdmissible(s, screening, restriction, aspirationValue, machineIni, posIni, moves);
+
+        BestMoves<InsertMove> bestMoves;
+        if (parallel) {
+            bestMoves = exploreInParallel(solution, 1, explorer);
+        } else {
+            bestMoves = new BestMoves<>(1);
+            for (int machineIni = 0; machineIni < solution.getInstance().getNumMachines(); machineIni++) {
+                for (int posIni = 0; posIni < solution.getNumberOfMachineWorkSlots(machineIni); posIni++) {
+                    explorer.explore(solution, machineIni, posIni, bestMoves);
                 }
             }
         }
 
-        return ExploreResult.fromList(list);
+        var moves = bestMoves.getMoves();
+        return moves.isEmpty() ? null : (EfficientInsertMove) moves.get(0);
+    }
+
+    /**
+     * Explores the admissible insert moves of the work slot in a given position of a given machine, keeping the best one
+     */
+    private void exploreAdmissible(CLSPSolution solution, MoveScreening screening, MoveRestriction restriction, double aspirationValue, int machineIni, int posIni, BestMoves<InsertMove> bestMoves) {
+        int partId = solution.getSchedule(machineIni).getPartId(posIni);
+        for (int machineEnd : solution.getInstance().getCapableMachines(partId)) {
+            for (int posEnd = 0; posEnd <= solution.getNumberOfMachineWorkSlots(machineEnd); posEnd++) {
+                if ((machineIni == machineEnd) && ((posIni == posEnd) || (posEnd == solution.getNumberOfMachineWorkSlots(machineEnd)))) {
+                    continue;
+                }
+                // A restricted move must also improve the aspiration value
+                double limit = bestMoves.threshold();
+                if (restriction.isRestricted(partId, machineIni, posIni, machineEnd, posEnd)) {
+                    limit = Math.min(limit, aspirationValue);
+                }
+                if (screening.insertLowerBound(machineIni, posIni, machineEnd, posEnd) >= limit) {
+                    continue;
+                }
+                EfficientInsertMove move;
+                if (machineIni == machineEnd) {
+                    move = generateMoveSameMachine(solution, machineIni, posIni, posEnd);
+                } else {
+                    move = generateMoveDifferentMachine(solution, machineIni, machineEnd, posIni, posEnd);
+                }
+                if (move.getMoveValue() < limit) {
+                    bestMoves.add(move);
+                }
+            }
+        }
     }
 
 }
@@ -27,7 +27,7 @@ public class EfficientInsertNeighborhoodPriority extends EfficientInsertNeighbor
             EfficientInsertMove em = (EfficientInsertMove) m;
 
             // Only check priority for moves that improve priority
-            int partId = solution.getSolutionData()[em.getInitialMachineId()][em.getInitialPosition()].getPartId();
+            int partId = solution.getSchedule(em.getInitialMachineId()).getPartId(em.getInitialPosition());
             if (solution.getInstance().getPriority(partId,em.getInitialMachineId()) <= 1)
                 continue;
 
@@ -40,7 +40,7 @@ public class EfficientInsertNeighborhoodPriority extends EfficientInsertNeighbor
                 continue;
 
             // Include the move with the cost in the new objective function.
-            double priorityImprovement = ((solution.getInstance().getPriority(partId, em.getFinalMachineId()) - solution.getInstance().getPriority(partId,em.getInitialMachineId())) * solution.getSolutionData()[em.getInitialMachineId()][em.getInitialPosition()].getDuration());
+            double priorityImprovement = ((solution.getInstance().getPriority(partId, em.getFinalMachineId()) - solution.getInstance().getPriority(partId,em.getInitialMachineId())) * solution.getSchedule(em.getInitialMachineId()).getDuration(em.getInitialPosition()));
             em.setPriorityImprovement(priorityImprovement);
             list.add(em);
 
@@ -17,7 +17,7 @@ public class ExtendedNeighborhood extends BasicNeighborhood<CLSPBaseMove> {
         List<Coordinate> moves = generateMoves(solution,true);
         for (Coordinate c : moves) {
             list.add(new InsertMove(solution, c.machineIni(), c.positionIni(), c.machineEnd(), c.positionEnd()));
-            if (c.positionEnd() < solution.getNumberOfMachineWorkSlots()[c.machineEnd()]) {
+            if (c.positionEnd() < solution.getNumberOfMachineWorkSlots(c.machineEnd())) {
                 list.add(new ExchangeMove(solution, c.machineIni(), c.positionIni(), c.machineEnd(), c.positionEnd()));
             }
         }
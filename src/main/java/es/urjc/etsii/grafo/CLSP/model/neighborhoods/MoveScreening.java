@@ -0,0 +1,165 @@
+package es.urjc.etsii.grafo.CLSP.model.neighborhoods;
+
+import es.urjc.etsii.grafo.CLSP.model.CLSPSolution;
+import es.urjc.etsii.grafo.CLSP.model.MachineSchedule;
+
+/**
+ * First stage of the evaluation of insert and exchange moves. It calculates the exact changeover time change of a
+ * move with a few lookups and a lower bound of its value, without simulating the production. If the lower bound is
+ * not better than the value a move needs to be kept, the move does not need to be evaluated completely.
+ * <p>
+ * The bound uses that the shortage of a part can only change if the part is produced in a machine changed by the
+ * move, and that it cannot be lower than zero. Every part of the changed machines is considered, and not only the
+ * work slots after the changed position, because the weekly production kept by the solution for a machine that was
+ * built by a constructive may differ slightly from the simulated one.
+ * <p>
+ * It is created for a given solution and is only valid while the solution does not change. It is not modified after
+ * creation, so it can be shared by several threads.
+ */
+public class MoveScreening {
+
+    private final CLSPSolution solution;
+    private final int[][] changeoverTime;
+
+    // Maximum shortage decrease for a change in each machine: shortage of the parts produced in the machine
+    private final int[] machineShortage;
+
+    // Value of a move if the changeover time did not change and the shortage was reduced as much as possible
+    private final double baseValue;
+
+    public MoveScreening(CLSPSolution solution) {
+        this.solution = solution;
+        this.changeoverTime = solution.getInstance().changeoverTime;
+
+        int numParts = solution.getInstance().getNumParts();
+        int[] partShortage = solution.calculatePartShortage();
+        this.machineShortage = new int[solution.getInstance().getNumMachines()];
+        boolean[] counted = new boolean[numParts];
+        for (int machine = 0; machine < machineShortage.length; machine++) {
+            MachineSchedule schedule = solution.getSchedule(machine);
+            for (int i = 0; i < schedule.size(); i++) {
+                int partId = schedule.getPartId(i);
+                if (!counted[partId]) {
+                    counted[partId] = true;
+                    machineShortage[machine] += partShortage[partId];
+                }
+            }
+            // Reset only the parts of this machine
+            for (int i = 0; i < schedule.size(); i++) {
+                counted[schedule.getPartId(i)] = false;
+            }
+        }
+        this.baseValue = solution.scoreCalculation(solution.getChangeoverTime(), solution.getWeeklyProducedPartsShortage()) - solution.getScore();
+    }
+
+    /**
+     * Lower bound of the value of an insert move
+     *
+     * @param mIni Initial machine
+     * @param pIni Initial position
+     * @param mEnd Final machine
+     * @param pEnd Final position
+     * @return value that the move cannot improve
+     */
+    public double insertLowerBound(int mIni, int pIni, int mEnd, int pEnd) {
+        return baseValue + insertChangeoverChange(mIni, pIni, mEnd, pEnd) - maximumShortageDecrease(mIni, mEnd);
+    }
+
+    /**
+     * Lower bound of the value of an exchange move
+     *
+     * @param mIni Initial machine
+     * @param pIni Initial position
+     * @param mEnd Final machine
+     * @param pEnd Final position
+     * @return value that the move cannot improve
+     */
+    public double exchangeLowerBound(int mIni, int pIni, int mEnd, int pEnd) {
+        return baseValue + exchangeChangeoverChange(mIni, pIni, mEnd, pEnd) - maximumShortageDecrease(mIni, mEnd);
+    }
+
+    private int maximumShortageDecrease(int mIni, int mEnd) {
+        return (mIni == mEnd) ? machineShortage[mIni] : machineShortage[mIni] + machineShortage[mEnd];
+    }
+
+    /**
+     * Changeover time change of an insert move, calculated as removing the work slot from its machine and inserting
+     * it in the final position of the sequence without it (as InsertMove does).
+     */
+    public int insertChangeoverChange(int mIni, int pIni, int mEnd, int pEnd) {
+        MachineSchedule ini = solution.getSchedule(mIni);
+        int part = ini.getPartId(pIni);
+        int n = ini.size();
+        int change = 0;
+
+        // Remove from the initial machine
+        if (pIni > 0)
+            change -= changeoverTime[ini.getPartId(pIni - 1)][part];
+        if (pIni < n - 1)
+            change -= changeoverTime[part][ini.getPartId(pIni + 1)];
+        if (pIni > 0 && pIni < n - 1)
+            change += changeoverTime[ini.getPartId(pIni - 1)][ini.getPartId(pIni + 1)];
+
+        // Insert in the final machine
+        int prev, next;
+        if (mIni == mEnd) {
+            // Positions of the sequence without the work slot
+            prev = (pEnd > 0) ? ini.getPartId(pEnd - 1 < pIni ? pEnd - 1 : pEnd) : -1;
+            next = (pEnd < n - 1) ? ini.getPartId(pEnd < pIni ? pEnd : pEnd + 1) : -1;
+        } else {
+            MachineSchedule end = solution.getSchedule(mEnd);
+            prev = (pEnd > 0) ? end.getPartId(pEnd - 1) : -1;
+            next = (pEnd < end.size()) ? end.getPartId(pEnd) : -1;
+        }
+        if (prev >= 0)
+            change += changeoverTime[prev][part];
+        if (next >= 0)
+            change += changeoverTime[part][next];
+        if (prev >= 0 && next >= 0)
+            change -= changeoverTime[prev][next];
+        return change;
+    }
+
+    /**
+     * Changeover time change of an exchange move: only the transitions next to the exchanged work slots change.
+     */
+    public int exchangeChangeoverChange(int mIni, int pIni, int mEnd, int pEnd) {
+        MachineSchedule ini = solution.getSchedule(mIni);
+        MachineSchedule end = solution.getSchedule(mEnd);
+        int partIni = ini.getPartId(pIni);
+        int partEnd = end.getPartId(pEnd);
+        if (mIni != mEnd) {
+            return neighboursChange(ini, pIni, partEnd) + neighboursChange(end, pEnd, partIni);
+        }
+        int first = Math.min(pIni, pEnd);
+        int second = Math.max(pIni, pEnd);
+        int change = 0;
+        // Transitions (k, k+1) that involve any of the two positions, without repetitions
+        int[] transitions = (second == first + 1) ? new int[]{first - 1, first, second} : new int[]{first - 1, first, second - 1, second};
+        for (int k : transitions) {
+            if (k < 0 || k + 1 >= ini.size())
+                continue;
+            change -= changeoverTime[ini.getPartId(k)][ini.getPartId(k + 1)];
+            change += changeoverTime[exchanged(ini, k, pIni, pEnd)][exchanged(ini, k + 1, pIni, pEnd)];
+        }
+        return change;
+    }
+
+    private static int exchanged(MachineSchedule schedule, int k, int pIni, int pEnd) {
+        if (k == pIni)
+            return schedule.getPartId(pEnd);
+        if (k == pEnd)
+            return schedule.getPartId(pIni);
+        return schedule.getPartId(k);
+    }
+
+    private int neighboursChange(MachineSchedule schedule, int position, int newPart) {
+        int oldPart = schedule.getPartId(position);
+        int change = 0;
+        if (position > 0)
+            change += changeoverTime[schedule.getPartId(position - 1)][newPart] - changeoverTime[schedule.getPartId(position - 1)][oldPart];
+        if (position < schedule.size() - 1)
+            change += changeoverTime[newPart][schedule.getPartId(position + 1)] - changeoverTime[oldPart][schedule.getPartId(position + 1)];
+        return change;
+    }
+}